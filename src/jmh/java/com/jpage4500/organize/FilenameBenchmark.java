@@ -0,0 +1,57 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * filename parsing as done by OrganizeMedia.parseMedia (tokenize + sentence case)
+ * - each invocation parses the whole corpus; run with "-prof gc" to see allocation rate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilenameBenchmark {
+    private final OrganizeMedia.FileInfo fileInfo = new OrganizeMedia.FileInfo(new File("bench.mkv"));
+
+    @Benchmark
+    public void parseName(Blackhole bh) {
+        for (String name : ReleaseNames.NAMES) {
+            fileInfo.type = OrganizeMedia.MediaType.TYPE_MOVIE;
+            bh.consume(FilenameTokenizer.parseName(name, fileInfo));
+        }
+    }
+
+    @Benchmark
+    public void parseNameSentenceCase(Blackhole bh) {
+        for (String name : ReleaseNames.NAMES) {
+            fileInfo.type = OrganizeMedia.MediaType.TYPE_MOVIE;
+            String displayName = FilenameTokenizer.parseName(name, fileInfo);
+            if (TextUtils.notEmpty(displayName)) {
+                bh.consume(TextUtils.toSentenceCase(displayName));
+            }
+        }
+    }
+
+    /**
+     * SxxEyy detection (was OrganizeMedia.isPatternTv) on every token-sized prefix of each name
+     */
+    @Benchmark
+    public void parseTv(Blackhole bh) {
+        for (String name : ReleaseNames.NAMES) {
+            int start = 0;
+            for (int i = 0; i <= name.length(); i++) {
+                if (i == name.length() || name.charAt(i) == '.' || name.charAt(i) == ' ') {
+                    bh.consume(FilenameTokenizer.parseTv(name, start, i, fileInfo));
+                    start = i + 1;
+                }
+            }
+        }
+    }
+}
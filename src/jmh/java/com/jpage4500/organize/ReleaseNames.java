@@ -0,0 +1,32 @@
+package com.jpage4500.organize;
+
+/**
+ * corpus of release names used by benchmarks (same style as the examples in OrganizeMedia.parseMedia)
+ */
+public class ReleaseNames {
+
+    public static final String[] NAMES = new String[]{
+        // -- TV --
+        "Tv.Show.Name.S03E01.720p.AMZN.WEBRip.x264-GalaxyTV.mkv",
+        "TV Show.S01E02.720p.WEB.x265-MiNX.mkv",
+        "Tv.Show.S01E07.1080p.WEB.h264-TRUFFLE.mkv",
+        "Tv.Show.S20E35.1080p.HEVC.x265-MeGusta[eztv.re].mkv",
+        "Tv.Show.S09E30.XviD-AFG[eztv.re].avi",
+        "Tv.Show.2018.S03E01.720p.NF.WEBRip.x264-GalaxyTV[TGx].mkv",
+        "The.Long.Running.Show.Of.The.Year.S12E08.1080p.WEB.H264-CAKES.mkv",
+        "Another.Show.S02E11.2160p.DSNP.WEB-DL.DDP5.1.Atmos.DV.HEVC-FLUX.mkv",
+        "Short.S01E01.mp4",
+        "Show.With.A.Name.2021.S01E04.1080p.AMZN.WEB-DL.DDP5.1.H.264-NTb.mkv",
+        // -- MOVIE --
+        "Movie.Name.2022.720p.NF.WEBRip.900MB.x264-GalaxyRG.mkv",
+        "Movie Name 2022 HDTS 1080p x264 AAC - QRips.mkv",
+        "Movie.Name.2022.UltraHD.HEVC.Dual.YG.mkv",
+        "Movie - Name (2022) [Hindi HQ Audio CAM RIP].mkv",
+        "2001.A.Space.Odyssey.1968.1080p.BluRay.x264-GROUP.mkv",
+        "The.Movie.With.A.Really.Long.Title.And.Subtitle.2019.REPACK.1080p.BluRay.x265-RARBG.mp4",
+        "Old.Movie.1954.720p.BluRay.x264.AAC-YTS.MX.mp4",
+        "Sequel.Part.II.2023.1080p.WEBRip.x264.AAC5.1-YTS.MX.mp4",
+        "movie.name.lower.case.2020.webrip.mkv",
+        "MOVIE NAME UPPER CASE (2017) 1080p.mkv",
+    };
+}
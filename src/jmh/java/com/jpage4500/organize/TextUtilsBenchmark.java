@@ -0,0 +1,68 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TextUtils helpers used on every file / token
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextUtilsBenchmark {
+    private static final String[] VIDEO_EXT = new String[]{
+        ".mp4", ".avi", ".mkv", ".mov", ".wmv"
+    };
+
+    private final MarkerTrie markerTrie = MarkerTrie.loadDefault();
+    private String[] displayNames;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        // display names as passed to toSentenceCase (part before quality/TV/year marker)
+        displayNames = new String[ReleaseNames.NAMES.length];
+        for (int i = 0; i < ReleaseNames.NAMES.length; i++) {
+            OrganizeMedia.FileInfo fileInfo = new OrganizeMedia.FileInfo(null);
+            displayNames[i] = FilenameTokenizer.parseName(ReleaseNames.NAMES[i], fileInfo);
+        }
+        tokens = String.join(" ", ReleaseNames.NAMES).replace('.', ' ').split(" ");
+    }
+
+    @Benchmark
+    public void toSentenceCase(Blackhole bh) {
+        for (String name : displayNames) {
+            bh.consume(TextUtils.toSentenceCase(name));
+        }
+    }
+
+    @Benchmark
+    public void equalsIgnoreCaseAny(Blackhole bh) {
+        for (String token : tokens) {
+            bh.consume(TextUtils.equalsIgnoreCaseAny(token, "1080p", "720p", "HDTS", "WEB", "webrip", "HEVC", "UltraHD"));
+        }
+    }
+
+    /**
+     * same check as equalsIgnoreCaseAny() above using the built-in marker list
+     */
+    @Benchmark
+    public void markerTrie(Blackhole bh) {
+        for (String token : tokens) {
+            bh.consume(markerTrie.matches(token, 0, token.length()));
+        }
+    }
+
+    @Benchmark
+    public void endsWithIgnoreCase(Blackhole bh) {
+        for (String name : ReleaseNames.NAMES) {
+            bh.consume(TextUtils.endsWithIgnoreCase(name, VIDEO_EXT));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * finds files that belong with a video (subtitles, .nfo, artwork) so they're moved together
+ * - files are grouped by the video base name they start with, using the walker's listing of the folder (listed here
+ * only for videos it didn't find, ie: watch mode)
+ * ie: "Show.S01E02.mkv" -> "Show.S01E02.en.srt", "Show.S01E02.forced.srt", "Show.S01E02.idx", "Show.S01E02.sub"
+ * - generic artwork (ie: "poster.jpg") only goes with a video that's alone in its folder
+ * NOTE: not thread safe; used by the thread that builds the plan
+ */
+public class CompanionFinder {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CompanionFinder.class);
+
+    private static final String[] COMPANION_EXT = new String[]{
+        ".srt", ".ass", ".ssa", ".sub", ".idx", ".vtt", ".nfo", ".jpg", ".jpeg", ".png"
+    };
+
+    private static final String[] ARTWORK_EXT = new String[]{
+        ".jpg", ".jpeg", ".png"
+    };
+
+    private static final String[] ARTWORK_NAMES = new String[]{
+        "poster", "fanart", "folder", "cover", "banner", "thumb", "landscape", "clearlogo"
+    };
+
+    private final String[] videoExtArr;
+    // folder -> lowercase video base name -> companion file names
+    private final Map<Path, Map<String, List<String>>> folderMap = new HashMap<>();
+
+    public CompanionFinder(String[] videoExtArr) {
+        this.videoExtArr = videoExtArr;
+    }
+
+    /**
+     * @param siblingList *optional names of the files in the same folder as video
+     * @return companion -> destination (next to destFile, renamed to match it); empty if none
+     */
+    public Map<File, File> find(File video, File destFile, List<String> siblingList) {
+        Path folder = video.getAbsoluteFile().getParentFile().toPath();
+        Map<String, List<String>> groupMap = folderMap.computeIfAbsent(folder,
+            f -> groupFiles(siblingList != null ? siblingList : loadFolder(f)));
+        String base = getBaseName(video.getName());
+        List<String> nameList = groupMap.get(base.toLowerCase(Locale.US));
+        if (nameList == null) return Collections.emptyMap();
+
+        String destBase = getBaseName(destFile.getName());
+        File destFolder = destFile.getParentFile();
+        Map<File, File> companionMap = new LinkedHashMap<>();
+        for (String name : nameList) {
+            String destName;
+            if (name.regionMatches(true, 0, base, 0, base.length())) {
+                // keep everything after the base name (ie: ".en.srt")
+                destName = destBase + name.substring(base.length());
+            } else {
+                destName = name;
+            }
+            companionMap.put(folder.resolve(name).toFile(), new File(destFolder, destName));
+        }
+        return companionMap;
+    }
+
+    /**
+     * forget listed folders (ie: before the next batch in watch mode)
+     */
+    public void clear() {
+        folderMap.clear();
+    }
+
+    private static List<String> loadFolder(Path folder) {
+        List<String> nameList = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                nameList.add(path.getFileName().toString());
+            }
+        } catch (IOException e) {
+            log.error("loadFolder: Exception: {}, {}", folder, e.getMessage());
+        }
+        return nameList;
+    }
+
+    private Map<String, List<String>> groupFiles(List<String> nameList) {
+        List<String> videoList = new ArrayList<>();
+        List<String> otherList = new ArrayList<>();
+        for (String name : nameList) {
+            if (TextUtils.endsWithIgnoreCase(name, videoExtArr)) {
+                videoList.add(getBaseName(name).toLowerCase(Locale.US));
+            } else if (TextUtils.endsWithIgnoreCase(name, COMPANION_EXT)) {
+                otherList.add(name);
+            }
+        }
+
+        Map<String, List<String>> groupMap = new HashMap<>();
+        if (videoList.isEmpty()) return groupMap;
+        for (String name : otherList) {
+            String lowerName = name.toLowerCase(Locale.US);
+            // longest video base name followed by '.' (ie: "show.s01e02" for "Show.S01E02.en.srt")
+            String bestBase = null;
+            for (String base : videoList) {
+                if (lowerName.length() > base.length() && lowerName.charAt(base.length()) == '.'
+                    && lowerName.startsWith(base) && (bestBase == null || base.length() > bestBase.length())) {
+                    bestBase = base;
+                }
+            }
+            if (bestBase == null && videoList.size() == 1 && isArtwork(name)) {
+                bestBase = videoList.get(0);
+            }
+            if (bestBase != null) {
+                groupMap.computeIfAbsent(bestBase, k -> new ArrayList<>()).add(name);
+            }
+        }
+        return groupMap;
+    }
+
+    private static boolean isArtwork(String name) {
+        return TextUtils.endsWithIgnoreCase(name, ARTWORK_EXT) && TextUtils.equalsIgnoreCaseAny(getBaseName(name), ARTWORK_NAMES);
+    }
+
+    /**
+     * @return name without extension
+     */
+    private static String getBaseName(String name) {
+        int pos = name.lastIndexOf('.');
+        return pos > 0 ? name.substring(0, pos) : name;
+    }
+}
@@ -0,0 +1,304 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * identifies a video container from the first few KB of a file (1 positional read; no ffprobe)
+ * - MKV/WebM (EBML), MP4/MOV (ISO-BMFF boxes), AVI (RIFF), MPEG-TS/M2TS (sync bytes), WMV (ASF)
+ * - duration and resolution are read only if the headers holding them are inside that first read
+ * (ie: MP4 with moov at the end of the file won't have them)
+ */
+public class ContainerProbe {
+    // bytes read from the start of a file
+    private static final int PROBE_SIZE = 32 * 1024;
+
+    // -- EBML (MKV) element ids --
+    private static final int EBML_HEADER = 0x1A45DFA3;
+    private static final int MKV_SEGMENT = 0x18538067;
+    private static final int MKV_INFO = 0x1549A966;
+    private static final int MKV_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int MKV_DURATION = 0x4489;
+    private static final int MKV_TRACKS = 0x1654AE6B;
+    private static final int MKV_TRACK_ENTRY = 0xAE;
+    private static final int MKV_VIDEO = 0xE0;
+    private static final int MKV_PIXEL_WIDTH = 0xB0;
+    private static final int MKV_PIXEL_HEIGHT = 0xBA;
+    private static final int MKV_CLUSTER = 0x1F43B675;
+
+    // box types an ISO-BMFF (MP4/MOV/fragmented MP4) file can start with
+    private static final String[] MP4_FIRST_BOXES = new String[]{
+        "ftyp", "styp", "moov", "moof", "mdat", "free", "skip", "wide", "uuid", "pnot", "sidx", "pdin"
+    };
+
+    private static final byte[] ASF_HEADER = new byte[]{
+        0x30, 0x26, (byte) 0xB2, 0x75, (byte) 0x8E, 0x66, (byte) 0xCF, 0x11,
+        (byte) 0xA6, (byte) 0xD9, 0x00, (byte) 0xAA, 0x00, 0x62, (byte) 0xCE, 0x6C
+    };
+    private static final byte[] ASF_FILE_PROPERTIES = new byte[]{
+        (byte) 0xA1, (byte) 0xDC, (byte) 0xAB, (byte) 0x8C, 0x47, (byte) 0xA9, (byte) 0xCF, 0x11,
+        (byte) 0x8E, (byte) 0xE4, 0x00, (byte) 0xC0, 0x0C, 0x20, 0x53, 0x65
+    };
+
+    public static class Info {
+        // "mkv", "mp4", "avi", "ts", "asf"
+        public final String format;
+        // -1 if unknown
+        public long durationMs = -1;
+        // 0 if unknown
+        public int width;
+        public int height;
+
+        Info(String format) {
+            this.format = format;
+        }
+    }
+
+    /**
+     * @return container info; null if file isn't a recognized video container
+     */
+    public static Info probe(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) <= 0) break;
+            }
+        }
+        return probe(buffer.array(), buffer.position());
+    }
+
+    static Info probe(byte[] data, int len) {
+        if (len < 12) return null;
+        if (readInt(data, 0) == EBML_HEADER) {
+            return probeMkv(data, len);
+        }
+        String type = readString(data, 4, 4);
+        if (TextUtils.equalsAny(type, false, MP4_FIRST_BOXES)) {
+            return probeMp4(data, len);
+        }
+        if (readString(data, 0, 4).equals("RIFF") && readString(data, 8, 4).equals("AVI ")) {
+            return probeAvi(data, len);
+        }
+        if (startsWith(data, len, 0, ASF_HEADER)) {
+            return probeAsf(data, len);
+        }
+        // 188 byte packets (TS) or 192 byte packets with a 4 byte timestamp first (M2TS)
+        if (isSync(data, len, 0, 188) || isSync(data, len, 4, 192)) {
+            return new Info("ts");
+        }
+        return null;
+    }
+
+    private static boolean isSync(byte[] data, int len, int offset, int packetSize) {
+        for (int i = 0; i < 3; i++) {
+            int pos = offset + i * packetSize;
+            if (pos >= len || data[pos] != 0x47) return false;
+        }
+        return true;
+    }
+
+    /**
+     * walk EBML elements, going into Segment/Info/Tracks/TrackEntry/Video and skipping everything else
+     */
+    private static Info probeMkv(byte[] data, int len) {
+        Info info = new Info("mkv");
+        long timecodeScale = 1000000;
+        double duration = -1;
+        int pos = 0;
+        while (pos < len) {
+            int idLen = vintLength(data[pos]);
+            if (idLen == 0 || idLen > 4 || pos + idLen >= len) break;
+            int id = (int) readUnsigned(data, pos, idLen);
+            pos += idLen;
+            int sizeLen = vintLength(data[pos]);
+            if (sizeLen == 0 || pos + sizeLen > len) break;
+            long size = readVint(data, pos, sizeLen);
+            pos += sizeLen;
+
+            if (id == MKV_SEGMENT || id == MKV_INFO || id == MKV_TRACKS || id == MKV_TRACK_ENTRY || id == MKV_VIDEO) {
+                // master element; its children follow
+                continue;
+            } else if (id == MKV_CLUSTER || size < 0) {
+                // media data (or unknown size); headers are done
+                break;
+            }
+            if (pos + size > len) break;
+            int dataLen = (int) size;
+            if (id == MKV_TIMECODE_SCALE && dataLen <= 8) {
+                timecodeScale = readUnsigned(data, pos, dataLen);
+            } else if (id == MKV_DURATION) {
+                if (dataLen == 4) duration = Float.intBitsToFloat(readInt(data, pos));
+                else if (dataLen == 8) duration = Double.longBitsToDouble(readUnsigned(data, pos, 8));
+            } else if (id == MKV_PIXEL_WIDTH && dataLen <= 4 && info.width == 0) {
+                info.width = (int) readUnsigned(data, pos, dataLen);
+            } else if (id == MKV_PIXEL_HEIGHT && dataLen <= 4 && info.height == 0) {
+                info.height = (int) readUnsigned(data, pos, dataLen);
+            }
+            pos += dataLen;
+        }
+        if (duration >= 0) {
+            info.durationMs = (long) (duration * timecodeScale / 1000000);
+        }
+        return info;
+    }
+
+    /**
+     * walk ISO-BMFF boxes, going into moov/trak: duration from mvhd and size from the first video tkhd
+     */
+    private static Info probeMp4(byte[] data, int len) {
+        Info info = new Info("mp4");
+        int pos = 0;
+        while (pos + 8 <= len) {
+            long size = readUnsigned(data, pos, 4);
+            String type = readString(data, pos + 4, 4);
+            int headerLen = 8;
+            if (size == 1) {
+                if (pos + 16 > len) break;
+                size = readUnsigned(data, pos + 8, 8);
+                headerLen = 16;
+            } else if (size == 0) {
+                // box runs to end of file
+                size = Long.MAX_VALUE;
+            }
+            if (size < headerLen) break;
+
+            if (type.equals("moov") || type.equals("trak")) {
+                pos += headerLen;
+                continue;
+            }
+            if (size > len - pos) break;
+            int start = pos + headerLen;
+            if (type.equals("mvhd") && size >= headerLen + 32) {
+                int version = data[start];
+                long timescale;
+                long duration;
+                // 0 or all ones: unknown (ie: fragmented MP4, live capture)
+                boolean isUnknown;
+                if (version == 1) {
+                    timescale = readUnsigned(data, start + 20, 4);
+                    duration = readUnsigned(data, start + 24, 8);
+                    isUnknown = duration == 0 || duration == -1;
+                } else {
+                    timescale = readUnsigned(data, start + 12, 4);
+                    duration = readUnsigned(data, start + 16, 4);
+                    isUnknown = duration == 0 || duration == 0xFFFFFFFFL;
+                }
+                if (timescale > 0 && !isUnknown) info.durationMs = duration * 1000 / timescale;
+            } else if (type.equals("tkhd") && size >= headerLen + 84 && info.width == 0) {
+                // width/height are the last 8 bytes (16.16 fixed point); 0 for audio tracks
+                int end = (int) (pos + size);
+                info.width = (int) (readUnsigned(data, end - 8, 4) >>> 16);
+                info.height = (int) (readUnsigned(data, end - 4, 4) >>> 16);
+            }
+            pos += (int) size;
+        }
+        return info;
+    }
+
+    /**
+     * main AVI header (avih) is normally the first chunk of the first LIST
+     */
+    private static Info probeAvi(byte[] data, int len) {
+        Info info = new Info("avi");
+        for (int pos = 12; pos + 48 <= len && pos < 256; pos++) {
+            if (!readString(data, pos, 4).equals("avih")) continue;
+            int start = pos + 8;
+            long usPerFrame = readUnsignedLE(data, start, 4);
+            long totalFrames = readUnsignedLE(data, start + 16, 4);
+            if (usPerFrame > 0 && totalFrames > 0) info.durationMs = usPerFrame * totalFrames / 1000;
+            info.width = (int) readUnsignedLE(data, start + 32, 4);
+            info.height = (int) readUnsignedLE(data, start + 36, 4);
+            break;
+        }
+        return info;
+    }
+
+    /**
+     * duration from the File Properties object in the ASF header
+     */
+    private static Info probeAsf(byte[] data, int len) {
+        Info info = new Info("asf");
+        // header object: guid(16), size(8), count(4), reserved(2); then child objects: guid(16), size(8)
+        int pos = 30;
+        while (pos + 24 <= len) {
+            long size = readUnsignedLE(data, pos + 16, 8);
+            if (size < 24) break;
+            if (startsWith(data, len, pos, ASF_FILE_PROPERTIES) && pos + 88 <= len) {
+                // play duration in 100ns units; preroll (ms) is included in it
+                long playDuration = readUnsignedLE(data, pos + 64, 8);
+                long preroll = readUnsignedLE(data, pos + 80, 8);
+                // 0 or all ones: unknown (ie: live broadcast flag set)
+                if (playDuration != 0 && playDuration != -1) {
+                    info.durationMs = Math.max(0, playDuration / 10000 - preroll);
+                }
+                break;
+            }
+            pos += (int) Math.min(size, len);
+        }
+        return info;
+    }
+
+    /**
+     * @return number of bytes in the EBML variable length int starting with b; 0 if invalid
+     */
+    private static int vintLength(byte b) {
+        int value = b & 0xFF;
+        if (value == 0) return 0;
+        return Integer.numberOfLeadingZeros(value) - 23;
+    }
+
+    /**
+     * @return value with the length marker removed; -1 for "unknown size" (all value bits set)
+     */
+    private static long readVint(byte[] data, int pos, int len) {
+        long value = (data[pos] & 0xFF) & (0xFF >> len);
+        boolean isAllOnes = value == (0xFF >> len);
+        for (int i = 1; i < len; i++) {
+            int b = data[pos + i] & 0xFF;
+            if (b != 0xFF) isAllOnes = false;
+            value = (value << 8) | b;
+        }
+        return isAllOnes ? -1 : value;
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (int) readUnsigned(data, pos, 4);
+    }
+
+    private static long readUnsigned(byte[] data, int pos, int len) {
+        long value = 0;
+        for (int i = 0; i < len; i++) {
+            value = (value << 8) | (data[pos + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readUnsignedLE(byte[] data, int pos, int len) {
+        long value = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            value = (value << 8) | (data[pos + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static String readString(byte[] data, int pos, int len) {
+        char[] charArr = new char[len];
+        for (int i = 0; i < len; i++) {
+            charArr[i] = (char) (data[pos + i] & 0xFF);
+        }
+        return new String(charArr);
+    }
+
+    private static boolean startsWith(byte[] data, int len, int pos, byte[] prefix) {
+        if (pos + prefix.length > len) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[pos + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,182 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.GsonHelper;
+import com.jpage4500.organize.utils.TextUtils;
+import com.jpage4500.organize.utils.XxHash64;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * content-based duplicate detection
+ * - candidates must have the exact same size
+ * - then a cheap fingerprint: XXH64 of the first and last block (positional reads, 2 small reads per file)
+ * - only if fingerprints match: XXH64 of the whole file
+ * - hashes are cached by (path, size, mtime) and optionally saved to a file so large files are never hashed twice
+ */
+public class ContentHasher {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ContentHasher.class);
+
+    // size of head/tail blocks used for fingerprint
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // read buffer for full hash
+    private static final int READ_SIZE = 1024 * 1024;
+
+    static class HashEntry {
+        long size;
+        long mtime;
+        long fingerprint;
+        // null until needed
+        Long fullHash;
+    }
+
+    private final File cacheFile;
+    private final String[] videoExtArr;
+    // path -> hashes
+    private final Map<String, HashEntry> cacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheFile *optional file to load/save hashes
+     */
+    public ContentHasher(File cacheFile, String[] videoExtArr) {
+        this.cacheFile = cacheFile;
+        this.videoExtArr = videoExtArr;
+        load();
+    }
+
+    /**
+     * @return video in folder with the same content as file; null if none
+     */
+    public File findDuplicate(File file, long size, File folder) {
+        if (!folder.isDirectory()) return null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+            for (Path path : stream) {
+                if (!TextUtils.endsWithIgnoreCase(path.getFileName().toString(), videoExtArr)) continue;
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attrs.isRegularFile() || attrs.size() != size) continue;
+                if (isSameContent(file.toPath(), path)) {
+                    return path.toFile();
+                }
+            }
+        } catch (IOException e) {
+            log.error("findDuplicate: Exception: {}, {}", folder, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * file was moved; keep its hashes under the new path
+     */
+    public void onMoved(File src, File dest) {
+        HashEntry entry = cacheMap.remove(src.getAbsolutePath());
+        if (entry != null) {
+            cacheMap.put(dest.getAbsolutePath(), entry);
+        }
+    }
+
+    private boolean isSameContent(Path a, Path b) throws IOException {
+        HashEntry entryA = getEntry(a);
+        HashEntry entryB = getEntry(b);
+        if (entryA.size != entryB.size || entryA.fingerprint != entryB.fingerprint) return false;
+        // fingerprints match; compare whole file
+        return getFullHash(a, entryA) == getFullHash(b, entryB);
+    }
+
+    private HashEntry getEntry(Path path) throws IOException {
+        String key = path.toAbsolutePath().toString();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+        HashEntry entry = cacheMap.get(key);
+        if (entry != null && entry.size == size && entry.mtime == mtime) return entry;
+
+        entry = new HashEntry();
+        entry.size = size;
+        entry.mtime = mtime;
+        entry.fingerprint = fingerprint(path, size);
+        cacheMap.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * XXH64 of first and last BLOCK_SIZE bytes (seeded with size)
+     */
+    private static long fingerprint(Path path, long size) throws IOException {
+        XxHash64 hash = new XxHash64(size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+            readFully(channel, buffer, 0);
+            hash.update(buffer);
+            if (size > BLOCK_SIZE) {
+                buffer.clear();
+                readFully(channel, buffer, Math.max(BLOCK_SIZE, size - BLOCK_SIZE));
+                hash.update(buffer);
+            }
+        }
+        return hash.digest();
+    }
+
+    private static long getFullHash(Path path, HashEntry entry) throws IOException {
+        if (entry.fullHash != null) return entry.fullHash;
+        long startMs = System.currentTimeMillis();
+        XxHash64 hash = new XxHash64(0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_SIZE);
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                hash.update(buffer);
+                buffer.clear();
+            }
+        }
+        entry.fullHash = hash.digest();
+        log.debug("getFullHash: {} bytes, {}ms, {}", entry.size, System.currentTimeMillis() - startMs, path);
+        return entry.fullHash;
+    }
+
+    /**
+     * positional read until buffer is full or end of file; buffer is flipped for reading
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) break;
+        }
+        buffer.flip();
+    }
+
+    private void load() {
+        if (cacheFile == null || !cacheFile.exists()) return;
+        try {
+            String json = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            Map<String, HashEntry> loadMap = GsonHelper.stringToMap(json, String.class, HashEntry.class);
+            if (loadMap == null) return;
+            // drop entries for files that no longer exist (once per run; moves made while running are re-keyed by onMoved)
+            loadMap.keySet().removeIf(path -> !new File(path).exists());
+            cacheMap.putAll(loadMap);
+            log.debug("load: {} hashes, {}", cacheMap.size(), cacheFile);
+        } catch (IOException e) {
+            log.error("load: Exception: {}, {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * save hashes to cache file (if set)
+     */
+    public void save() {
+        if (cacheFile == null) return;
+        File tempFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), GsonHelper.toJson(cacheMap).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("save: Exception: {}, {}", cacheFile, e.getMessage());
+        }
+    }
+}
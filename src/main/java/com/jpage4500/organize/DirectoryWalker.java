@@ -0,0 +1,199 @@
+package com.jpage4500.organize;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lists a folder tree concurrently (fork-join) and hands every file found to the caller through a bounded queue
+ * - listing runs on the pool while the caller consumes files, so parsing overlaps with listing
+ * - each file carries the names of the files listed with it, so later stages don't list its folder again
+ */
+public class DirectoryWalker {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DirectoryWalker.class);
+
+    // max number of files waiting to be processed before listing threads block
+    private static final int QUEUE_SIZE = 1000;
+
+    // marks the end of the walk
+    private static final ScanEntry END = new ScanEntry(null, null);
+
+    private final int parallelism;
+    private final ScanIndex scanIndex;
+
+    public interface FileHandler {
+        void onFile(ScanEntry entry);
+    }
+
+    public static class ScanEntry {
+        public final Path path;
+        public final BasicFileAttributes attrs;
+        // names of all files in the same folder (including this one); null if folder wasn't listed
+        public final List<String> siblingList;
+
+        ScanEntry(Path path, BasicFileAttributes attrs) {
+            this(path, attrs, null);
+        }
+
+        ScanEntry(Path path, BasicFileAttributes attrs, List<String> siblingList) {
+            this.path = path;
+            this.attrs = attrs;
+            this.siblingList = siblingList;
+        }
+    }
+
+    /**
+     * @param parallelism max number of folders listed at the same time
+     * @param scanIndex   *optional index from the last run; unchanged folders are not listed again
+     */
+    public DirectoryWalker(int parallelism, ScanIndex scanIndex) {
+        this.parallelism = Math.max(1, parallelism);
+        this.scanIndex = scanIndex;
+    }
+
+    /**
+     * walk root (folder or file) and call handler for every file found
+     * - handler is always called on the calling thread
+     */
+    public void walk(Path root, FileHandler handler) {
+        BasicFileAttributes rootAttrs = readAttributes(root);
+        if (rootAttrs == null) return;
+        if (!rootAttrs.isDirectory()) {
+            handler.onFile(new ScanEntry(root, rootAttrs));
+            return;
+        }
+
+        BlockingQueue<ScanEntry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        pool.execute(() -> {
+            try {
+                new ListTask(root, rootAttrs, queue).invoke();
+            } catch (Exception e) {
+                log.error("walk: Exception: {}, {}", root, e.getMessage());
+            } finally {
+                putQuietly(queue, END);
+            }
+        });
+
+        try {
+            while (true) {
+                ScanEntry entry = queue.take();
+                if (entry == END) break;
+                handler.onFile(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        long startNs = System.nanoTime();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            Metrics.histogram(Metrics.STAT).recordSince(startNs);
+            return attrs;
+        } catch (IOException e) {
+            log.error("readAttributes: Exception: {}, {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void putQuietly(BlockingQueue<ScanEntry> queue, ScanEntry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * lists a single folder; files are queued and sub-folders are forked as new tasks
+     */
+    private class ListTask extends RecursiveAction {
+        private static final long serialVersionUID = 4215532912641386413L;
+
+        private final Path dir;
+        private final BasicFileAttributes dirAttrs;
+        private final BlockingQueue<ScanEntry> queue;
+
+        ListTask(Path dir, BasicFileAttributes dirAttrs, BlockingQueue<ScanEntry> queue) {
+            this.dir = dir;
+            this.dirAttrs = dirAttrs;
+            this.queue = queue;
+        }
+
+        @Override
+        protected void compute() {
+            long mtime = dirAttrs.lastModifiedTime().toMillis();
+            List<ListTask> subTaskList = new ArrayList<>();
+
+            // folder unchanged since last run? only visit the sub-folders it had
+            List<Path> unchangedSubDirList = scanIndex != null ? scanIndex.getUnchangedSubDirs(dir, mtime) : null;
+            if (unchangedSubDirList != null) {
+                Metrics.counter(Metrics.DIRS_UNCHANGED).increment();
+                for (Path subDir : unchangedSubDirList) {
+                    BasicFileAttributes attrs = readAttributes(subDir);
+                    if (attrs != null && attrs.isDirectory()) {
+                        subTaskList.add(new ListTask(subDir, attrs, queue));
+                    }
+                }
+                invokeAll(subTaskList);
+                return;
+            }
+
+            long startNs = System.nanoTime();
+            List<Path> fileList = new ArrayList<>();
+            List<BasicFileAttributes> fileAttrsList = new ArrayList<>();
+            List<String> nameList = new ArrayList<>();
+            List<Path> subDirList = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs = readAttributes(child);
+                    if (attrs == null) continue;
+                    if (attrs.isDirectory()) {
+                        subDirList.add(child);
+                        subTaskList.add(new ListTask(child, attrs, queue));
+                    } else {
+                        fileList.add(child);
+                        fileAttrsList.add(attrs);
+                        nameList.add(child.getFileName().toString());
+                    }
+                }
+            } catch (IOException e) {
+                log.error("compute: Exception listing: {}, {}", dir, e.getMessage());
+                invokeAll(subTaskList);
+                return;
+            }
+            // listing time includes stat of each child
+            Metrics.histogram(Metrics.LIST).recordSince(startNs);
+            Metrics.counter(Metrics.DIRS_LISTED).increment();
+
+            // record folder before handing off files so their decisions are attached to it
+            if (scanIndex != null) {
+                scanIndex.putDir(dir, mtime, subDirList, nameList);
+            }
+            List<String> siblingList = Collections.unmodifiableList(nameList);
+            for (int i = 0; i < fileList.size(); i++) {
+                putQuietly(queue, new ScanEntry(fileList.get(i), fileAttrsList.get(i), siblingList));
+            }
+            invokeAll(subTaskList);
+        }
+    }
+}
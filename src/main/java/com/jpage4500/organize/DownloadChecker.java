@@ -0,0 +1,128 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * decides if a video has finished downloading, without sleeping or polling per file
+ * - partial markers: "<name>.part", "<name>.!qB", "<name>.aria2", .. in the same folder (from the walker's listing;
+ * listed here only for files it didn't find, ie: watch mode)
+ * - quiet: mtime is older than quietMs, or size/mtime are the same as in the last run (scan index)
+ * - optional: a shared lock can be taken (fails while a writer holds an exclusive lock; mostly Windows clients)
+ * NOTE: safe to call from any thread
+ */
+public class DownloadChecker {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DownloadChecker.class);
+
+    // added to the full name of a file while it's downloading (or next to it) by common clients
+    private static final String[] PARTIAL_SUFFIXES = new String[]{
+        ".part", ".partial", ".!qb", ".!ut", ".aria2", ".crdownload"
+    };
+
+    private final long quietMs;
+    private final boolean isLockCheck;
+    private final ScanIndex scanIndex;
+    // folder -> lowercase names of partial markers in folder
+    private final Map<Path, Set<String>> markerMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param quietMs     min time since last modified (0 to not check)
+     * @param isLockCheck true to also try a shared lock on the file
+     * @param scanIndex   *optional index from the last run
+     */
+    public DownloadChecker(long quietMs, boolean isLockCheck, ScanIndex scanIndex) {
+        this.quietMs = quietMs;
+        this.isLockCheck = isLockCheck;
+        this.scanIndex = scanIndex;
+    }
+
+    /**
+     * @param siblingList *optional names of the files in the same folder
+     * @return null if file looks complete; otherwise why not (ie: "modified 5s ago")
+     */
+    public String check(Path file, long size, long mtime, List<String> siblingList) {
+        Path folder = file.toAbsolutePath().getParent();
+        if (folder != null) {
+            Set<String> markerSet = markerMap.computeIfAbsent(folder,
+                f -> siblingList != null ? getMarkers(siblingList) : loadFolder(f));
+            if (!markerSet.isEmpty()) {
+                String name = file.getFileName().toString().toLowerCase(Locale.US);
+                for (String suffix : PARTIAL_SUFFIXES) {
+                    if (markerSet.contains(name + suffix)) return "found " + suffix;
+                }
+            }
+        }
+
+        long age = getQuietRemaining(mtime);
+        if (age > 0 && (scanIndex == null || !scanIndex.isSameAsLastRun(file, size, mtime))) {
+            return "modified " + ((System.currentTimeMillis() - mtime) / 1000) + "s ago";
+        }
+
+        if (isLockCheck && !canLock(file)) {
+            return "locked";
+        }
+        return null;
+    }
+
+    /**
+     * @return ms until a file modified at mtime has been quiet for long enough; 0 if it already has
+     */
+    public long getQuietRemaining(long mtime) {
+        return Math.max(0, quietMs - (System.currentTimeMillis() - mtime));
+    }
+
+    /**
+     * forget listed folders (ie: before the next batch in watch mode)
+     */
+    public void clear() {
+        markerMap.clear();
+    }
+
+    private static Set<String> getMarkers(List<String> nameList) {
+        Set<String> markerSet = ConcurrentHashMap.newKeySet();
+        for (String name : nameList) {
+            if (TextUtils.endsWithIgnoreCase(name, PARTIAL_SUFFIXES)) {
+                markerSet.add(name.toLowerCase(Locale.US));
+            }
+        }
+        return markerSet;
+    }
+
+    private static Set<String> loadFolder(Path folder) {
+        List<String> nameList = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                nameList.add(path.getFileName().toString());
+            }
+        } catch (IOException e) {
+            log.error("loadFolder: Exception: {}, {}", folder, e.getMessage());
+        }
+        return getMarkers(nameList);
+    }
+
+    private static boolean canLock(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null) return false;
+            lock.release();
+            return true;
+        } catch (IOException e) {
+            // ie: sharing violation on Windows while file is open for writing
+            log.trace("canLock: {}, {}", file, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.ThreadUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * structured log of every decision: one JSON object per line (NDJSON), appended to a file
+ * ie: {"ts":1700000000000,"event":"moved","src":"/dl/a.mkv","dest":"/tv/A/A S01E01.mkv","bytes":0,"ms":2}
+ * - events: scanned, skipped, parsed, duplicate, moved, error, script-ran
+ * - durations: "us" (microseconds) for parsing, "ms" for moves and scripts
+ * - events are collected in a buffer and written with one channel write per FLUSH_SIZE bytes (or every FLUSH_MS)
+ */
+public class EventLog {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(EventLog.class);
+
+    public static final String SCANNED = "scanned";
+    public static final String SKIPPED = "skipped";
+    public static final String PARSED = "parsed";
+    public static final String DUPLICATE = "duplicate";
+    public static final String MOVED = "moved";
+    public static final String ERROR = "error";
+    public static final String SCRIPT_RAN = "script-ran";
+
+    private static final int FLUSH_SIZE = 64 * 1024;
+    private static final long FLUSH_MS = 2000;
+
+    /**
+     * one line; add fields then pass to write()
+     */
+    public static class Event {
+        private final StringBuilder sb = new StringBuilder(256);
+
+        private Event(String type) {
+            sb.append("{\"ts\":").append(System.currentTimeMillis());
+            add("event", type);
+        }
+
+        public Event add(String key, String value) {
+            if (value == null) return this;
+            sb.append(",\"").append(key).append("\":");
+            appendString(sb, value);
+            return this;
+        }
+
+        public Event add(String key, File file) {
+            return file != null ? add(key, file.getAbsolutePath()) : this;
+        }
+
+        public Event add(String key, long value) {
+            sb.append(",\"").append(key).append("\":").append(value);
+            return this;
+        }
+
+        public Event add(String key, boolean value) {
+            sb.append(",\"").append(key).append("\":").append(value);
+            return this;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE * 2);
+    private final ScheduledExecutorService timer;
+
+    private EventLog(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        timer = Executors.newSingleThreadScheduledExecutor(ThreadUtils.newThreadFactory("event-log"));
+        timer.scheduleWithFixedDelay(this::flush, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+        // watch mode only ends with a signal; don't lose the buffered tail
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "event-log-shutdown"));
+    }
+
+    /**
+     * open file for appending
+     */
+    public static EventLog open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        return new EventLog(file, channel);
+    }
+
+    public Event event(String type) {
+        return new Event(type);
+    }
+
+    /**
+     * add event to the buffer; safe to call from any thread
+     */
+    public void write(Event event) {
+        synchronized (buffer) {
+            buffer.append(event.sb).append("}\n");
+            if (buffer.length() >= FLUSH_SIZE) {
+                flushLocked();
+            }
+        }
+    }
+
+    /**
+     * write everything buffered to file
+     */
+    public void flush() {
+        synchronized (buffer) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() {
+        if (buffer.length() == 0 || !channel.isOpen()) return;
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(buffer));
+        buffer.setLength(0);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            log.error("flush: Exception: {}, {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * flush and close file; safe to call more than once
+     */
+    public void close() {
+        timer.shutdown();
+        synchronized (buffer) {
+            if (!channel.isOpen()) return;
+            flushLocked();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("close: Exception: {}, {}", file, e.getMessage());
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,129 @@
+package com.jpage4500.organize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Locale;
+
+/**
+ * moves a file, including across filesystems (ie: USB download drive -> NAS library)
+ * - same filesystem: atomic rename
+ * - different filesystem: zero-copy transfer (FileChannel.transferTo) into a temp file in the destination folder,
+ * fsync, atomic rename to the final name, then delete the source. A partial copy is never left under the final name.
+ */
+public class FileMover {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileMover.class);
+
+    public static class Result {
+        // true if file was copied (different filesystem); false if renamed
+        public boolean isCopy;
+        public long bytes;
+        public long elapsedMs;
+
+        /**
+         * @return "rename" or "copy 1200.0 MB in 12.3s (97.6 MB/s)"
+         */
+        public String describe() {
+            if (!isCopy) return "rename";
+            double mb = bytes / 1000000.0;
+            double secs = Math.max(elapsedMs, 1) / 1000.0;
+            return String.format(Locale.US, "copy %.1f MB in %.1fs (%.1f MB/s)", mb, secs, mb / secs);
+        }
+    }
+
+    /**
+     * move src to dest; fails if dest already exists
+     */
+    public static Result move(Path src, Path dest) throws IOException {
+        Result result = new Result();
+        long startNs = System.nanoTime();
+        if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(dest.toString());
+        }
+        try {
+            Files.move(src, dest, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // different filesystem
+            result.isCopy = true;
+            result.bytes = copy(src, dest);
+            Files.delete(src);
+            Metrics.counter(Metrics.BYTES_COPIED).add(result.bytes);
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        Metrics.histogram(result.isCopy ? Metrics.COPY : Metrics.RENAME).record(elapsedNs);
+        result.elapsedMs = elapsedNs / 1000000;
+        return result;
+    }
+
+    /**
+     * copy src to a temp file next to dest, fsync and rename to dest
+     *
+     * @return number of bytes copied
+     */
+    private static long copy(Path src, Path dest) throws IOException {
+        Path destDir = dest.toAbsolutePath().getParent();
+        // hidden temp file; not using dest name to stay under filename length limits
+        Path tempFile = Files.createTempFile(destDir, ".organize-", ".part");
+        try {
+            long size;
+            try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                size = in.size();
+                long pos = 0;
+                while (pos < size) {
+                    // uses sendfile/copy_file_range where available
+                    long count = in.transferTo(pos, size - pos, out);
+                    if (count <= 0) {
+                        // source shrank while copying
+                        if (in.size() <= pos) break;
+                        continue;
+                    }
+                    pos += count;
+                }
+                if (pos != size) {
+                    throw new IOException("copied " + pos + " of " + size + " bytes: " + src);
+                }
+                out.force(true);
+            }
+            Files.setLastModifiedTime(tempFile, Files.getLastModifiedTime(src));
+            copyPermissions(src, tempFile);
+            if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+                throw new FileAlreadyExistsException(dest.toString());
+            }
+            Files.move(tempFile, dest, StandardCopyOption.ATOMIC_MOVE);
+            syncDir(destDir);
+            return size;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e2) {
+                log.error("copy: unable to delete: {}, {}", tempFile, e2.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * temp files are created owner-only (0600); keep the source permissions so the library stays readable by others
+     */
+    private static void copyPermissions(Path src, Path dest) {
+        if (!src.getFileSystem().supportedFileAttributeViews().contains("posix")) return;
+        try {
+            Files.setPosixFilePermissions(dest, Files.getPosixFilePermissions(src));
+        } catch (IOException | UnsupportedOperationException e) {
+            // ie: FAT/exFAT destination
+            log.debug("copyPermissions: not supported: {}, {}", dest, e.getMessage());
+        }
+    }
+
+    /**
+     * fsync folder so the rename is durable (not supported on all platforms)
+     */
+    private static void syncDir(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.trace("syncDir: not supported: {}, {}", dir, e.getMessage());
+        }
+    }
+}
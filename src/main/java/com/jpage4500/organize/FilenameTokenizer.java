@@ -0,0 +1,166 @@
+package com.jpage4500.organize;
+
+/**
+ * single-pass tokenizer for release names (ie: "Tv.Show.Name.S03E01.720p.AMZN.WEBRip.x264-GalaxyTV.mkv")
+ * - tokens are separated by '.' or ' ' and are compared in-place (no regex, no split() array, no substrings)
+ * - display name stops at the first release marker (see {@link MarkerTrie}), SxxEyy or year token
+ */
+public class FilenameTokenizer {
+
+    // display name stops at any of these (case insensitive); see markers.txt
+    private static volatile MarkerTrie markers = MarkerTrie.loadDefault();
+
+    // reused per thread to build the display name
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    /**
+     * replace built-in release markers (ie: loaded from --markers=FILE)
+     */
+    public static void setMarkers(MarkerTrie markerTrie) {
+        markers = markerTrie;
+    }
+
+    /**
+     * parse display name from filename; sets type, season, episode and tvVersion on fileInfo when a SxxEyy token is found
+     *
+     * @return display name (NOT sentence case); empty string if nothing found
+     */
+    public static String parseName(String name, OrganizeMedia.FileInfo fileInfo) {
+        MarkerTrie markerTrie = markers;
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+
+        // trailing separators don't create tokens
+        int last = name.length();
+        while (last > 0 && isSeparator(name.charAt(last - 1))) last--;
+        if (last == 0) return "";
+
+        int start = 0;
+        for (int tokenIndex = 0; ; tokenIndex++) {
+            int end = nextSeparator(name, start, last);
+
+            if (markerTrie.matches(name, start, end)) break;
+
+            // look for season/episode
+            if (parseTv(name, start, end, fileInfo)) break;
+
+            // look for year
+            // ignore the first part to handle movies like "2001"
+            if (tokenIndex > 0 && isYear(name, start, end)) {
+                sb.append(' ');
+                if (name.charAt(start) == '(') {
+                    sb.append(name, start, end);
+                } else {
+                    // add year in parens "(year)"
+                    sb.append('(').append(name, start, end).append(')');
+                }
+
+                // this could be a movie or TV show - look at the next part to try and figure out which
+                if (end < last) {
+                    int nextStart = end + 1;
+                    parseTv(name, nextStart, nextSeparator(name, nextStart, last), fileInfo);
+                }
+                break;
+            }
+
+            // add part to display name
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(name, start, end);
+
+            if (end >= last) break;
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * cache key for parseName(): lowercase name up to the first SxxEyy token (or through the first year token), with
+     * separators as ' ' and "|tv" added if it's followed by SxxEyy; parseName() returns the same name for the same key
+     * - sets type, season, episode and tvVersion on fileInfo when a SxxEyy token is found (like parseName)
+     *
+     * @return key; null if name has no SxxEyy/year token to stop at
+     */
+    public static String getCacheKey(String name, OrganizeMedia.FileInfo fileInfo) {
+        int last = name.length();
+        while (last > 0 && isSeparator(name.charAt(last - 1))) last--;
+
+        int start = 0;
+        int keyEnd = -1;
+        for (int tokenIndex = 0; start < last; tokenIndex++) {
+            int end = nextSeparator(name, start, last);
+            if (parseTv(name, start, end, fileInfo)) {
+                keyEnd = start;
+                break;
+            } else if (tokenIndex > 0 && isYear(name, start, end)) {
+                keyEnd = end;
+                if (end < last) {
+                    int nextStart = end + 1;
+                    parseTv(name, nextStart, nextSeparator(name, nextStart, last), fileInfo);
+                }
+                break;
+            }
+            start = end + 1;
+        }
+        if (keyEnd <= 0) return null;
+
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        for (int i = 0; i < keyEnd; i++) {
+            char c = name.charAt(i);
+            sb.append(isSeparator(c) ? ' ' : Character.toLowerCase(c));
+        }
+        if (fileInfo.type == OrganizeMedia.MediaType.TYPE_TV) sb.append("|tv");
+        return sb.toString();
+    }
+
+    /**
+     * look for season/episode (ie: "S01E02") in name[start, end)
+     *
+     * @return true if found; fileInfo is updated with type, season, episode and tvVersion
+     */
+    public static boolean parseTv(CharSequence name, int start, int end, OrganizeMedia.FileInfo fileInfo) {
+        if (end - start != 6) return false;
+        char s = name.charAt(start);
+        char e = name.charAt(start + 3);
+        if ((s != 's' && s != 'S') || (e != 'e' && e != 'E')) return false;
+        char s1 = name.charAt(start + 1);
+        char s2 = name.charAt(start + 2);
+        char e1 = name.charAt(start + 4);
+        char e2 = name.charAt(start + 5);
+        if (!isDigit(s1) || !isDigit(s2) || !isDigit(e1) || !isDigit(e2)) return false;
+
+        // TV show
+        fileInfo.type = OrganizeMedia.MediaType.TYPE_TV;
+        fileInfo.tvVersion = new String(new char[]{'S', s1, s2, 'E', e1, e2});
+        fileInfo.season = (s1 - '0') * 10 + (s2 - '0');
+        fileInfo.episode = (e1 - '0') * 10 + (e2 - '0');
+        return true;
+    }
+
+    /**
+     * @return true if name[start, end) is a year: "2022", "(2022)"
+     */
+    public static boolean isYear(CharSequence name, int start, int end) {
+        if (start < end && name.charAt(start) == '(') start++;
+        if (end > start && name.charAt(end - 1) == ')') end--;
+        if (end - start != 4) return false;
+        char c1 = name.charAt(start);
+        char c2 = name.charAt(start + 1);
+        return (c1 == '1' || c1 == '2') && (c2 == '9' || c2 == '0')
+            && isDigit(name.charAt(start + 2)) && isDigit(name.charAt(start + 3));
+    }
+
+    private static int nextSeparator(String name, int start, int last) {
+        int pos = start;
+        while (pos < last && !isSeparator(name.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == ' ';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
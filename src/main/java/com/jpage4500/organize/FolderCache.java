@@ -0,0 +1,58 @@
+package com.jpage4500.organize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * destination folders known to exist for this run (or watch batch), so each show/movie folder is created (or checked)
+ * only once
+ * - folders already listed by the library index are known to exist without touching the filesystem
+ */
+public class FolderCache {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FolderCache.class);
+
+    private final LibraryIndex libraryIndex;
+    private final Set<String> folderSet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param libraryIndex *optional index to seed existing folders from
+     */
+    public FolderCache(LibraryIndex libraryIndex) {
+        this.libraryIndex = libraryIndex;
+    }
+
+    /**
+     * create folder (and parents) unless it's already known to exist
+     *
+     * @throws IOException if folder can't be created
+     */
+    public void createFolder(File folder) throws IOException {
+        String path = folder.getAbsolutePath();
+        if (folderSet.contains(path)) return;
+        if (libraryIndex == null || !libraryIndex.isExistingFolder(folder)) {
+            Files.createDirectories(folder.toPath());
+            log.trace("createFolder: {}", folder);
+        }
+        // parents exist too
+        for (File parent = folder; parent != null && folderSet.add(parent.getAbsolutePath()); ) {
+            parent = parent.getParentFile();
+        }
+    }
+
+    /**
+     * folder may no longer exist (ie: a move into it failed); check again next time
+     */
+    public void remove(File folder) {
+        folderSet.remove(folder.getAbsolutePath());
+    }
+
+    /**
+     * forget all folders (ie: watch mode; folders may be renamed or deleted between batches)
+     */
+    public void clear() {
+        folderSet.clear();
+    }
+}
@@ -0,0 +1,119 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.TextUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * in-memory index of videos in the TV/movie library, used to detect duplicates without probing every extension
+ * - each show/movie folder is listed once, the first time a file is moved into it
+ * - videos are keyed by lowercase base name (no extension) so "Show S01E01.mkv" matches "show s01e01.avi"
+ * - videos added but not moved yet are kept through clear() so they're still found while their move is running
+ */
+public class LibraryIndex {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(LibraryIndex.class);
+
+    private final String[] videoExtArr;
+    // folder path -> base names of videos in folder
+    private final Map<String, Set<String>> folderMap = new ConcurrentHashMap<>();
+    // folders that existed when they were listed
+    private final Set<String> existingFolderSet = ConcurrentHashMap.newKeySet();
+    // "folder/base name" of videos added whose move hasn't finished
+    private final Set<String> pendingSet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param videoExtArr video extensions (ie: ".mkv"); other files in library folders are ignored
+     */
+    public LibraryIndex(String[] videoExtArr) {
+        this.videoExtArr = videoExtArr;
+    }
+
+    /**
+     * @return true if a video with the same base name (any video extension) exists in file's folder
+     */
+    public boolean contains(File file) {
+        Set<String> nameSet = getFolder(file.getParentFile());
+        return nameSet.contains(getKey(file.getName())) || pendingSet.contains(getPendingKey(file));
+    }
+
+    /**
+     * record a video added to the library (call as soon as a move is queued)
+     */
+    public void add(File file) {
+        getFolder(file.getParentFile()).add(getKey(file.getName()));
+        pendingSet.add(getPendingKey(file));
+    }
+
+    /**
+     * move of a video passed to add() finished; it's in the folder now
+     */
+    public void onMoved(File file) {
+        pendingSet.remove(getPendingKey(file));
+    }
+
+    /**
+     * undo add() (ie: move failed)
+     */
+    public void remove(File file) {
+        getFolder(file.getParentFile()).remove(getKey(file.getName()));
+        pendingSet.remove(getPendingKey(file));
+    }
+
+    /**
+     * @return true if folder was listed and existed (without checking the filesystem)
+     */
+    public boolean isExistingFolder(File folder) {
+        return existingFolderSet.contains(folder.getAbsolutePath());
+    }
+
+    /**
+     * forget all folders; they'll be listed again on next use (ie: library may have been changed by something else)
+     * - videos still being moved are kept
+     */
+    public void clear() {
+        folderMap.clear();
+        existingFolderSet.clear();
+    }
+
+    private Set<String> getFolder(File folder) {
+        return folderMap.computeIfAbsent(folder.getAbsolutePath(), key -> loadFolder(folder.toPath()));
+    }
+
+    private Set<String> loadFolder(Path folder) {
+        Set<String> nameSet = ConcurrentHashMap.newKeySet();
+        if (!Files.isDirectory(folder)) return nameSet;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            existingFolderSet.add(folder.toAbsolutePath().toString());
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (TextUtils.endsWithIgnoreCase(name, videoExtArr)) {
+                    nameSet.add(getKey(name));
+                }
+            }
+        } catch (IOException e) {
+            log.error("loadFolder: Exception: {}, {}", folder, e.getMessage());
+        }
+        return nameSet;
+    }
+
+    private static String getPendingKey(File file) {
+        return file.getAbsoluteFile().getParent() + File.separatorChar + getKey(file.getName());
+    }
+
+    /**
+     * @return lowercase name without extension
+     */
+    private static String getKey(String name) {
+        int pos = name.lastIndexOf('.');
+        if (pos > 0) name = name.substring(0, pos);
+        return name.toLowerCase(Locale.US);
+    }
+}
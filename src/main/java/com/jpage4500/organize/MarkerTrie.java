@@ -0,0 +1,133 @@
+package com.jpage4500.organize;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * case-insensitive trie of release markers ("1080p", "WEBRip", "x265", ...)
+ * - a token is matched in place in O(token length) no matter how many markers are loaded
+ * - markers are loaded from a rule file: one per line, blank lines and lines starting with '#' are ignored
+ */
+public class MarkerTrie {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MarkerTrie.class);
+
+    // built-in rule file (classpath)
+    private static final String DEFAULT_RULES = "/markers.txt";
+
+    private static class Node {
+        // child chars (folded) and matching child nodes; fan-out is small so a linear scan is fine
+        char[] chars = new char[0];
+        Node[] children = new Node[0];
+        boolean isMarker;
+
+        Node child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node node = child(c);
+            if (node != null) return node;
+            int len = chars.length;
+            char[] newChars = new char[len + 1];
+            Node[] newChildren = new Node[len + 1];
+            System.arraycopy(chars, 0, newChars, 0, len);
+            System.arraycopy(children, 0, newChildren, 0, len);
+            node = new Node();
+            newChars[len] = c;
+            newChildren[len] = node;
+            chars = newChars;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * load built-in markers
+     */
+    public static MarkerTrie loadDefault() {
+        MarkerTrie trie = new MarkerTrie();
+        try (InputStream is = MarkerTrie.class.getResourceAsStream(DEFAULT_RULES)) {
+            if (is == null) {
+                log.error("loadDefault: missing {}", DEFAULT_RULES);
+            } else {
+                trie.addAll(readRules(is));
+            }
+        } catch (IOException e) {
+            log.error("loadDefault: Exception: {}", e.getMessage());
+        }
+        return trie;
+    }
+
+    /**
+     * load markers from a rule file
+     */
+    public static MarkerTrie load(File file) throws IOException {
+        MarkerTrie trie = new MarkerTrie();
+        try (InputStream is = new FileInputStream(file)) {
+            trie.addAll(readRules(is));
+        }
+        log.debug("load: {} markers from {}", trie.size(), file);
+        return trie;
+    }
+
+    private static List<String> readRules(InputStream is) throws IOException {
+        List<String> ruleList = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            ruleList.add(line);
+        }
+        return ruleList;
+    }
+
+    public void addAll(List<String> markerList) {
+        for (String marker : markerList) {
+            add(marker);
+        }
+    }
+
+    public void add(String marker) {
+        if (marker == null || marker.isEmpty()) return;
+        Node node = root;
+        for (int i = 0; i < marker.length(); i++) {
+            node = node.addChild(fold(marker.charAt(i)));
+        }
+        if (!node.isMarker) {
+            node.isMarker = true;
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if text[start, end) is a marker (case insensitive)
+     */
+    public boolean matches(CharSequence text, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            node = node.child(fold(text.charAt(i)));
+            if (node == null) return false;
+        }
+        return node.isMarker;
+    }
+
+    /**
+     * fold case the same way String.equalsIgnoreCase compares characters
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,223 @@
+package com.jpage4500.organize;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * watches a folder tree with a {@link WatchService} and hands off files once they've stopped changing
+ * - every folder under root is registered (including new ones as they're created)
+ * - a file is only handed off when its size and mtime haven't changed for settleMs (ie: download is complete)
+ * - defer() hands a file off again later; it isn't looked at (no stat) until then
+ */
+public class MediaWatcher {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MediaWatcher.class);
+
+    // how often pending files are checked
+    private static final long POLL_MS = 2000;
+
+    public interface Listener extends DirectoryWalker.FileHandler {
+        /**
+         * called after one or more files were handed off to onFile()
+         */
+        void onBatchComplete();
+    }
+
+    private static class PendingFile {
+        long size = -1;
+        long mtime = -1;
+        long lastChangeMs;
+        // not checked before this time (deferred)
+        long notBeforeMs;
+    }
+
+    private static class DeferredFile {
+        final Path file;
+        final long size;
+        final long mtime;
+        final long notBeforeMs;
+
+        DeferredFile(Path file, long size, long mtime, long notBeforeMs) {
+            this.file = file;
+            this.size = size;
+            this.mtime = mtime;
+            this.notBeforeMs = notBeforeMs;
+        }
+    }
+
+    private final Path root;
+    private final long settleMs;
+    private final Listener listener;
+
+    private final Map<WatchKey, Path> keyMap = new HashMap<>();
+    private final Map<Path, PendingFile> pendingMap = new LinkedHashMap<>();
+    // added from other threads; moved to pendingMap by the watch thread
+    private final Queue<DeferredFile> deferredQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param settleMs time (ms) a file's size must stay the same before it's handed off
+     */
+    public MediaWatcher(Path root, long settleMs, Listener listener) {
+        this.root = root;
+        this.settleMs = settleMs;
+        this.listener = listener;
+    }
+
+    /**
+     * watch until interrupted
+     */
+    public void run() throws IOException {
+        try (WatchService watchService = root.getFileSystem().newWatchService()) {
+            registerAll(watchService, root, false);
+            log.debug("run: watching {} folders under {}", keyMap.size(), root);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                addDeferred();
+                // nothing pending? block until something happens
+                WatchKey key = pendingMap.isEmpty() ? watchService.take() : watchService.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleKey(watchService, key);
+                    key = watchService.poll();
+                }
+                checkPending();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("run: watch service closed");
+        }
+    }
+
+    private void handleKey(WatchService watchService, WatchKey key) {
+        Path dir = keyMap.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == OVERFLOW) {
+                // events were lost; look at everything again
+                log.debug("handleKey: OVERFLOW: rescanning {}", root);
+                registerAll(watchService, root, true);
+                continue;
+            } else if (dir == null || kind == ENTRY_DELETE) {
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (Files.isDirectory(child)) {
+                // new folder (or folder moved in); files may already be inside it
+                registerAll(watchService, child, true);
+            } else {
+                addPending(child);
+            }
+        }
+        if (!key.reset()) {
+            // folder no longer accessible
+            keyMap.remove(key);
+        }
+    }
+
+    /**
+     * register dir and all of its sub-folders
+     *
+     * @param addFiles true to also add any existing files as pending
+     */
+    private void registerAll(WatchService watchService, Path dir, boolean addFiles) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = subDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                    keyMap.put(key, subDir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (addFiles) addPending(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.error("visitFileFailed: {}, {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.error("registerAll: Exception: {}, {}", dir, e.getMessage());
+        }
+    }
+
+    private void addPending(Path file) {
+        PendingFile pendingFile = pendingMap.get(file);
+        if (pendingFile == null) {
+            pendingFile = new PendingFile();
+            pendingMap.put(file, pendingFile);
+        }
+        pendingFile.lastChangeMs = System.currentTimeMillis();
+        // changed while deferred; look again now
+        pendingFile.notBeforeMs = 0;
+    }
+
+    /**
+     * hand off file again in delayMs (ie: still downloading); safe to call from any thread
+     * - handed off right away then if size/mtime are still the same
+     */
+    public void defer(Path file, long size, long mtime, long delayMs) {
+        deferredQueue.add(new DeferredFile(file, size, mtime, System.currentTimeMillis() + delayMs));
+    }
+
+    private void addDeferred() {
+        DeferredFile deferredFile;
+        while ((deferredFile = deferredQueue.poll()) != null) {
+            PendingFile pendingFile = new PendingFile();
+            pendingFile.size = deferredFile.size;
+            pendingFile.mtime = deferredFile.mtime;
+            pendingFile.lastChangeMs = System.currentTimeMillis() - settleMs;
+            pendingFile.notBeforeMs = deferredFile.notBeforeMs;
+            pendingMap.put(deferredFile.file, pendingFile);
+        }
+    }
+
+    /**
+     * hand off any pending files whose size/mtime haven't changed for settleMs
+     */
+    private void checkPending() {
+        if (pendingMap.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        int numReady = 0;
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            Path file = entry.getKey();
+            PendingFile pendingFile = entry.getValue();
+            if (now < pendingFile.notBeforeMs) continue;
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // file was removed or renamed
+                iterator.remove();
+                continue;
+            }
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            if (size != pendingFile.size || mtime != pendingFile.mtime) {
+                // still growing
+                pendingFile.size = size;
+                pendingFile.mtime = mtime;
+                pendingFile.lastChangeMs = now;
+            } else if (now - pendingFile.lastChangeMs >= settleMs) {
+                iterator.remove();
+                listener.onFile(new DirectoryWalker.ScanEntry(file, attrs));
+                numReady++;
+            }
+        }
+        if (numReady > 0) {
+            listener.onBatchComplete();
+        }
+    }
+}
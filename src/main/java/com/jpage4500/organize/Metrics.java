@@ -0,0 +1,223 @@
+package com.jpage4500.organize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * counters and latency histograms for each stage of a run (listing, stat, parsing, duplicate checks, moves, scripts)
+ * - safe to record from any thread; counters are striped (LongAdder) so parallel listing threads don't contend
+ * - histograms use log-linear buckets (like HdrHistogram): 8 buckets per power of 2, so percentiles are within ~12%
+ * - summary() for the end of a run; savePrometheus() writes the node_exporter textfile format
+ */
+public class Metrics {
+
+    // -- stages (histograms, nanoseconds) --
+    public static final String LIST = "list";
+    public static final String STAT = "stat";
+    public static final String PARSE = "parse";
+    public static final String PROBE = "probe";
+    public static final String DUPLICATE = "duplicate";
+    public static final String RENAME = "rename";
+    public static final String COPY = "copy";
+    public static final String SCRIPT = "script";
+
+    // -- counters --
+    public static final String DIRS_LISTED = "dirs_listed";
+    public static final String DIRS_UNCHANGED = "dirs_unchanged";
+    public static final String FILES_SCANNED = "files_scanned";
+    public static final String FILES_UNCHANGED = "files_unchanged";
+    public static final String FILES_SKIPPED = "files_skipped";
+    public static final String FILES_PARSED = "files_parsed";
+    public static final String FILES_MOVED = "files_moved";
+    public static final String DUPLICATES = "duplicates";
+    public static final String ERRORS = "errors";
+    public static final String BYTES_COPIED = "bytes_copied";
+    public static final String SCRIPTS_RUN = "scripts_run";
+    public static final String PARSE_CACHE_HITS = "parse_cache_hits";
+    public static final String PARSE_CACHE_MISSES = "parse_cache_misses";
+
+    private static final Map<String, LongAdder> counterMap = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histogramMap = new ConcurrentHashMap<>();
+    // current values read when reported (ie: queue depth)
+    private static final Map<String, LongSupplier> gaugeMap = new ConcurrentHashMap<>();
+
+    public static class Histogram {
+        // values < 8 get their own bucket; then 8 buckets for each power of 2 up to 2^62
+        private static final int SUB_BUCKETS = 8;
+        private static final int NUM_BUCKETS = (62 - 2) * SUB_BUCKETS + SUB_BUCKETS;
+
+        private final AtomicLongArray bucketArr = new AtomicLongArray(NUM_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            bucketArr.incrementAndGet(getBucket(value));
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * record time since startNs (from System.nanoTime())
+         */
+        public void recordSince(long startNs) {
+            record(System.nanoTime() - startNs);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param percentile 0.0 - 1.0
+         * @return upper bound of the bucket holding percentile (never more than max)
+         */
+        public long getPercentile(double percentile) {
+            long total = getCount();
+            if (total == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(total * percentile));
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += bucketArr.get(i);
+                if (seen >= target) {
+                    return Math.min(getUpperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        private static int getBucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - 3)) & (SUB_BUCKETS - 1);
+            return (exp - 2) * SUB_BUCKETS + sub;
+        }
+
+        private static long getUpperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exp = bucket / SUB_BUCKETS + 2;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exp - 3)) - 1;
+        }
+    }
+
+    public static LongAdder counter(String name) {
+        return counterMap.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static Histogram histogram(String name) {
+        return histogramMap.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /**
+     * report supplier's current value as name (replaces any existing gauge with the same name)
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        gaugeMap.put(name, supplier);
+    }
+
+    /**
+     * @return table of counters and stage timings; empty if nothing was recorded
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counterMap).entrySet()) {
+            sb.append(String.format(Locale.US, "  %-24s %12d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gaugeMap).entrySet()) {
+            sb.append(String.format(Locale.US, "  %-24s %12d%n", entry.getKey(), entry.getValue().getAsLong()));
+        }
+        if (!histogramMap.isEmpty()) {
+            sb.append(String.format(Locale.US, "  %-10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "total", "mean", "p50", "p90", "p99", "max"));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histogramMap).entrySet()) {
+            Histogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            if (count == 0) continue;
+            sb.append(String.format(Locale.US, "  %-10s %8d %10s %10s %10s %10s %10s %10s%n", entry.getKey(), count,
+                formatNs(histogram.getSum()), formatNs(histogram.getSum() / count),
+                formatNs(histogram.getPercentile(0.5)), formatNs(histogram.getPercentile(0.9)),
+                formatNs(histogram.getPercentile(0.99)), formatNs(histogram.getMax())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return "850ns", "12.3us", "4.5ms", "1.2s"
+     */
+    private static String formatNs(long ns) {
+        if (ns < 1000) return ns + "ns";
+        if (ns < 1000000) return String.format(Locale.US, "%.1fus", ns / 1000.0);
+        if (ns < 1000000000) return String.format(Locale.US, "%.1fms", ns / 1000000.0);
+        return String.format(Locale.US, "%.1fs", ns / 1000000000.0);
+    }
+
+    /**
+     * @return counters and stage timings in Prometheus text format
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counterMap).entrySet()) {
+            String name = "organize_" + entry.getKey() + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gaugeMap).entrySet()) {
+            String name = "organize_" + entry.getKey();
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        if (!histogramMap.isEmpty()) {
+            sb.append("# TYPE organize_stage_seconds summary\n");
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histogramMap).entrySet()) {
+            Histogram histogram = entry.getValue();
+            String stage = "stage=\"" + entry.getKey() + "\"";
+            for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+                sb.append("organize_stage_seconds{").append(stage).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(toSeconds(histogram.getPercentile(quantile))).append('\n');
+            }
+            sb.append("organize_stage_seconds_sum{").append(stage).append("} ").append(toSeconds(histogram.getSum())).append('\n');
+            sb.append("organize_stage_seconds_count{").append(stage).append("} ").append(histogram.getCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String toSeconds(long ns) {
+        return String.format(Locale.US, "%.9f", ns / 1000000000.0);
+    }
+
+    /**
+     * write toPrometheus() to file; replaced atomically so a collector never reads a partial file
+     */
+    public static void savePrometheus(File file) throws IOException {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        Files.write(tempFile.toPath(), toPrometheus().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
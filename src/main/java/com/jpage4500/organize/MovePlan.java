@@ -0,0 +1,135 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.GsonHelper;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * complete list of what a run will do, built before anything is moved
+ * - every scanned file gets an item: MOVE (with companion files like subtitles), DUPLICATE, COLLISION or SKIP (with reason)
+ * - moves are executed grouped by destination folder (see getMovesByFolder())
+ * NOTE: not thread safe; built by the thread that parses files
+ */
+public class MovePlan {
+
+    public enum Action {
+        MOVE,
+        // video already exists at destination
+        DUPLICATE,
+        // another file in this plan resolves to the same video
+        COLLISION,
+        // not a video, too small, name not parsed
+        SKIP
+    }
+
+    public static class Companion {
+        public final String src;
+        public final String dest;
+
+        Companion(File src, File dest) {
+            this.src = src.getAbsolutePath();
+            this.dest = dest.getAbsolutePath();
+        }
+    }
+
+    public static class Item {
+        public Action action;
+        public String src;
+        public String dest;
+        public long size;
+        public String reason;
+        public List<Companion> companions;
+
+        transient OrganizeMedia.FileInfo fileInfo;
+        transient File destFile;
+    }
+
+    private final List<Item> itemList = new ArrayList<>();
+    // lowercase destination path without extension -> item moving there
+    private final Map<String, Item> destMap = new HashMap<>();
+
+    /**
+     * add a move; turned into a COLLISION if another item already moves to the same video
+     *
+     * @return item added
+     */
+    public Item addMove(OrganizeMedia.FileInfo fileInfo, File destFile) {
+        Item item = newItem(fileInfo, Action.MOVE);
+        item.dest = destFile.getAbsolutePath();
+        item.destFile = destFile;
+
+        String key = getKey(destFile);
+        Item existing = destMap.get(key);
+        if (existing != null) {
+            item.action = Action.COLLISION;
+            item.reason = "same destination as: " + existing.src;
+        } else {
+            destMap.put(key, item);
+        }
+        itemList.add(item);
+        return item;
+    }
+
+    /**
+     * add a file that won't be moved
+     */
+    public Item addSkip(OrganizeMedia.FileInfo fileInfo, Action action, String reason) {
+        Item item = newItem(fileInfo, action);
+        item.reason = reason;
+        itemList.add(item);
+        return item;
+    }
+
+    public void addCompanion(Item item, File src, File dest) {
+        if (item.companions == null) item.companions = new ArrayList<>();
+        item.companions.add(new Companion(src, dest));
+    }
+
+    public boolean isEmpty() {
+        return itemList.isEmpty();
+    }
+
+    public int count(Action action) {
+        int count = 0;
+        for (Item item : itemList) {
+            if (item.action == action) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return MOVE items grouped by destination folder; folders and files are sorted by name
+     */
+    public SortedMap<File, List<Item>> getMovesByFolder() {
+        SortedMap<File, List<Item>> folderMap = new TreeMap<>();
+        for (Item item : itemList) {
+            if (item.action != Action.MOVE) continue;
+            folderMap.computeIfAbsent(item.destFile.getParentFile(), k -> new ArrayList<>()).add(item);
+        }
+        for (List<Item> list : folderMap.values()) {
+            list.sort(Comparator.comparing(item -> item.dest));
+        }
+        return folderMap;
+    }
+
+    public String toJson() {
+        return GsonHelper.gsonBuilder().setPrettyPrinting().create().toJson(itemList);
+    }
+
+    private static Item newItem(OrganizeMedia.FileInfo fileInfo, Action action) {
+        Item item = new Item();
+        item.action = action;
+        item.src = fileInfo.file.getAbsolutePath();
+        item.size = fileInfo.length;
+        item.fileInfo = fileInfo;
+        return item;
+    }
+
+    private static String getKey(File file) {
+        String path = file.getAbsolutePath();
+        int pos = path.lastIndexOf('.');
+        if (pos > path.lastIndexOf(File.separatorChar)) path = path.substring(0, pos);
+        return path.toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,149 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.ThreadUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * runs moves concurrently with a limit on in-flight moves for each source/destination device pair
+ * - copies between 2 devices (maxCopiesPerDevice) are limited separately from renames on the same device
+ * (maxRenamesPerDevice) so a NAS can be kept busy without thrashing a single spinning disk with parallel seeks
+ * - each device pair gets its own queue, so a busy pair doesn't hold up moves between other devices
+ * - each queue is bounded: submit() blocks while a pair already has QUEUE_SIZE moves waiting (backpressure)
+ */
+public class MoveScheduler {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MoveScheduler.class);
+
+    public interface Callback {
+        void onMoved(FileMover.Result result);
+
+        void onError(IOException e);
+    }
+
+    // max moves waiting for each device pair before submit() blocks
+    private static final int QUEUE_SIZE = 100;
+
+    /**
+     * queue is full: wait for room instead of rejecting the move
+     */
+    private static final RejectedExecutionHandler BLOCK_WHEN_FULL = (r, executor) -> {
+        if (executor.isShutdown()) throw new RejectedExecutionException("move scheduler closed");
+        try {
+            executor.getQueue().put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted waiting to queue move", e);
+        }
+    };
+
+    private final int maxCopiesPerDevice;
+    private final int maxRenamesPerDevice;
+
+    // "srcDevice>destDevice" -> executor limited to N threads
+    private final Map<String, ThreadPoolExecutor> pairExecutorMap = new ConcurrentHashMap<>();
+    // folder -> device id
+    private final Map<Path, Object> deviceMap = new ConcurrentHashMap<>();
+    // destinations currently being moved to
+    private final Set<Path> pendingDestSet = ConcurrentHashMap.newKeySet();
+
+    public MoveScheduler(int maxCopiesPerDevice, int maxRenamesPerDevice) {
+        this.maxCopiesPerDevice = Math.max(1, maxCopiesPerDevice);
+        this.maxRenamesPerDevice = Math.max(1, maxRenamesPerDevice);
+        Metrics.gauge("queue_depth_move", this::getQueueDepth);
+    }
+
+    /**
+     * queue a move; callback is called on a worker thread when done
+     * - blocks while the queue for this device pair is full
+     *
+     * @return false if another move to the same destination is already pending
+     */
+    public boolean submit(Path src, Path dest, Callback callback) {
+        if (!pendingDestSet.add(dest)) return false;
+
+        Object srcDevice = getDevice(src.toAbsolutePath().getParent());
+        Object destDevice = getDevice(dest.toAbsolutePath().getParent());
+        boolean isSameDevice = srcDevice.equals(destDevice);
+        String key = srcDevice + ">" + destDevice;
+        ThreadPoolExecutor executor = pairExecutorMap.computeIfAbsent(key, k -> {
+            int numThreads = isSameDevice ? maxRenamesPerDevice : maxCopiesPerDevice;
+            log.debug("submit: new device pair: {}, threads:{}", k, numThreads);
+            return new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+                ThreadUtils.newThreadFactory("move-" + pairExecutorMap.size()), BLOCK_WHEN_FULL);
+        });
+        Runnable task = () -> {
+            try {
+                FileMover.Result result = FileMover.move(src, dest);
+                callback.onMoved(result);
+            } catch (IOException e) {
+                callback.onError(e);
+            } catch (Exception e) {
+                log.error("submit: Exception: {}, {}", src, e.getMessage());
+            } finally {
+                pendingDestSet.remove(dest);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            pendingDestSet.remove(dest);
+            callback.onError(new IOException("move not queued: " + src + ", " + e.getMessage()));
+        }
+        return true;
+    }
+
+    /**
+     * wait for all queued moves to finish
+     */
+    public void close() {
+        for (ExecutorService executor : pairExecutorMap.values()) {
+            executor.shutdown();
+        }
+        try {
+            for (ExecutorService executor : pairExecutorMap.values()) {
+                while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.debug("close: waiting for moves to finish..");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return moves waiting (not running yet) for all device pairs
+     */
+    private long getQueueDepth() {
+        long depth = 0;
+        for (ThreadPoolExecutor executor : pairExecutorMap.values()) {
+            depth += executor.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return device id for folder ("unix:dev" when supported, otherwise the FileStore)
+     */
+    private Object getDevice(Path dir) {
+        if (dir == null) return "";
+        Object device = deviceMap.get(dir);
+        if (device != null) return device;
+        try {
+            device = Files.getAttribute(dir, "unix:dev");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            try {
+                device = Files.getFileStore(dir).name();
+            } catch (IOException e2) {
+                log.error("getDevice: Exception: {}, {}", dir, e2.getMessage());
+                device = dir.getRoot() != null ? dir.getRoot().toString() : "";
+            }
+        }
+        deviceMap.put(dir, device);
+        return device;
+    }
+}
@@ -2,39 +2,96 @@ package com.jpage4500.organize;
 
 import com.jpage4500.organize.logging.AppLoggerFactory;
 import com.jpage4500.organize.logging.Log;
-import com.jpage4500.organize.utils.FileUtils;
-import com.jpage4500.organize.utils.GsonHelper;
 import com.jpage4500.organize.utils.TextUtils;
+import com.jpage4500.organize.utils.ThreadUtils;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class OrganizeMedia {
-    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(OrganizeMedia.class);
-
     // min video size = 50 Meg
     private static final int MIN_VIDEO_LENGTH = 50 * 1000000;
 
-    private static final Pattern TV_PATTERN = Pattern.compile("[sS][0-9][0-9][eE][0-9][0-9]");
-    private static final Pattern YEAR_PATTERN = Pattern.compile("\\(?[12][90][0-9][0-9]\\)?");
-
     private static final String[] VIDEO_EXT = new String[]{
-        ".mp4", ".avi", ".mkv", ".mov", ".wmv"
+        ".mp4", ".m4v", ".avi", ".mkv", ".mov", ".wmv", ".ts", ".m2ts"
     };
 
     private static boolean isTestMode;
     private static File tvFolder;
     private static File movieFolder;
+    // where TV episodes go under tvFolder (--tv-layout=TEMPLATE)
+    private static PathTemplate tvLayout = PathTemplate.parse(PathTemplate.DEFAULT_TV);
     private static File rootFile;
     private static File runScript;
+    private static ScriptRunner scriptRunner;
+    private static MoveScheduler moveScheduler;
+    private static final LibraryIndex libraryIndex = new LibraryIndex(VIDEO_EXT);
+    private static final FolderCache folderCache = new FolderCache(libraryIndex);
+    private static final CompanionFinder companionFinder = new CompanionFinder(VIDEO_EXT);
+    // parsed names by release name prefix (ie: every episode of a season)
+    private static final ParseCache parseCache = new ParseCache(1000);
+    // compare file contents to find duplicates with a different name (--content-dups); hashes saved to --hash-cache=FILE
+    private static boolean isContentDups;
+    private static File hashCacheFile;
+    private static ContentHasher contentHasher;
+    // max moves in flight per device pair: copies between devices (--copies-per-device=N), renames (--renames-per-device=N)
+    private static int copiesPerDevice = 1;
+    private static int renamesPerDevice = 4;
+    // run script once per N moved files (--script-batch=N) / after N seconds (--script-delay=N) / per folder (--script-per-folder)
+    private static int scriptBatchSize = 1;
+    private static int scriptDelaySecs = 30;
+    private static boolean isScriptPerFolder;
+    // max scripts running at once (--script-threads=N) and max seconds each may run (--script-timeout=N)
+    private static int scriptThreads = 2;
+    private static int scriptTimeoutSecs = 300;
+    // number of folders listed in parallel (--threads=N)
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
+    // pipeline: scan (walker) -> classify (--classify-threads=N) -> plan (1 thread) -> move (MoveScheduler) -> notify (ScriptRunner)
+    private static int classifyThreads = 2;
+    private static final int STAGE_QUEUE_SIZE = 1000;
+    private static PipelineStage<DirectoryWalker.ScanEntry> classifyStage;
+    private static PipelineStage<FileInfo> planStage;
+    // index of the last scan (--index=FILE)
+    private static File indexFile;
+    private static ScanIndex scanIndex;
+    // keep running and watch MEDIA folder for new files (--watch)
+    private static boolean isWatchMode;
+    // seconds a file's size must stay the same before it's handled in watch mode (--settle=N)
+    private static int settleSecs = 10;
+    private static MediaWatcher mediaWatcher;
+    // skip videos still downloading: modified in the last N seconds (--quiet=N), partial marker (ie: .part) next to it,
+    // or can't be locked (--lock-check); in watch mode they're looked at again later
+    // -1: not set; quiet check is on by default only in watch mode (a single run is often started by a download
+    // client's on-complete hook for a file that was just written)
+    private static int quietSecs = -1;
+    private static final int WATCH_QUIET_SECS = 60;
+    private static boolean isLockCheck;
+    private static DownloadChecker downloadChecker;
+    private static final long INCOMPLETE_RETRY_MS = 30 * 1000L;
+    // read container header of each video (unless --no-probe); skip unknown containers and samples shorter than --min-duration=N
+    private static boolean isProbe = true;
+    private static int minDurationSecs = 180;
+    // files found since the last executePlan(); saved as JSON to --plan=FILE
+    private static MovePlan movePlan = new MovePlan();
+    private static File planFile;
+    // NDJSON log of every decision (--events=FILE)
+    private static File eventFile;
+    private static EventLog eventLog;
+    // counters and stage timings in Prometheus text format (--metrics=FILE); saved every N seconds in watch mode
+    private static File metricsFile;
+    private static final int METRICS_INTERVAL_SECS = 15;
 
     /**
      * configuring SLF4J custom logger implementation
@@ -54,17 +111,29 @@ public class OrganizeMedia {
     public static void main(String[] args) {
         setupLogging();
 
-        if (args.length < 3) {
+        // options start with "--"; everything else is positional
+        List<String> argList = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                argList.add(arg);
+            } else if (!parseOption(arg)) {
+                System.out.println("invalid option: " + arg);
+                printUsage();
+                System.exit(0);
+            }
+        }
+
+        if (argList.size() < 3) {
             printUsage();
             System.exit(0);
         }
 
-        tvFolder = new File(args[0]);
-        movieFolder = new File(args[1]);
-        rootFile = new File(args[2]);
+        tvFolder = new File(argList.get(0));
+        movieFolder = new File(argList.get(1));
+        rootFile = new File(argList.get(2));
 
-        if (args.length > 3) {
-            String arg4 = args[3];
+        if (argList.size() > 3) {
+            String arg4 = argList.get(3);
             if (TextUtils.equalsIgnoreCaseAny(arg4, "test")) {
                 isTestMode = true;
                 System.out.println("** TEST MODE **");
@@ -87,19 +156,340 @@ public class OrganizeMedia {
             System.out.println("invalid FILE: " + rootFile);
             return;
         }
+        if (indexFile != null) {
+            scanIndex = ScanIndex.load(indexFile);
+        }
+        if (quietSecs < 0) {
+            quietSecs = isWatchMode ? WATCH_QUIET_SECS : 0;
+        }
+        downloadChecker = new DownloadChecker(quietSecs * 1000L, isLockCheck, scanIndex);
+        if (eventFile != null) {
+            try {
+                eventLog = EventLog.open(eventFile);
+            } catch (IOException e) {
+                System.out.println("ERROR: opening event log: " + eventFile + ", " + e.getMessage());
+            }
+        }
+        if (runScript != null) {
+            scriptRunner = new ScriptRunner(runScript, scriptBatchSize, scriptDelaySecs * 1000L, isScriptPerFolder,
+                scriptThreads, scriptTimeoutSecs * 1000L);
+            scriptRunner.setEventLog(eventLog);
+        }
+        moveScheduler = new MoveScheduler(copiesPerDevice, renamesPerDevice);
+        if (isContentDups) {
+            contentHasher = new ContentHasher(hashCacheFile, VIDEO_EXT);
+        }
+        classifyStage = new PipelineStage<>("classify", classifyThreads, STAGE_QUEUE_SIZE, OrganizeMedia::handleScanEntry);
+        // plan is built in order on 1 thread (collisions, companion lookups)
+        planStage = new PipelineStage<>("plan", 1, STAGE_QUEUE_SIZE, OrganizeMedia::planFile);
+        if (isWatchMode && rootFile.isDirectory()) {
+            // created before the first scan so files still downloading now are deferred to it
+            mediaWatcher = createWatcher(rootFile);
+        }
         processFile(rootFile);
+
+        if (isWatchMode) {
+            saveIndex();
+            watchFolder(rootFile);
+        }
+        classifyStage.close();
+        planStage.close();
+        moveScheduler.close();
+        saveIndex();
+        if (scriptRunner != null) {
+            scriptRunner.close();
+        }
+        if (eventLog != null) {
+            eventLog.close();
+        }
+        saveMetrics();
+        System.out.print("summary:\n" + Metrics.summary());
+    }
+
+    private static void saveMetrics() {
+        if (metricsFile == null) return;
+        try {
+            Metrics.savePrometheus(metricsFile);
+        } catch (IOException e) {
+            System.out.println("ERROR: saving metrics: " + metricsFile + ", " + e.getMessage());
+        }
+    }
+
+    private static void saveIndex() {
+        // nothing is moved in test mode so don't save decisions
+        if (scanIndex != null && !isTestMode) {
+            scanIndex.save();
+        }
+        if (contentHasher != null) {
+            contentHasher.save();
+        }
+    }
+
+    /**
+     * @return false if option is not recognized or value is invalid
+     */
+    private static boolean parseOption(String arg) {
+        int eqPos = arg.indexOf('=');
+        String name = eqPos > 0 ? arg.substring(0, eqPos) : arg;
+        String value = eqPos > 0 ? arg.substring(eqPos + 1) : null;
+        switch (name) {
+            case "--threads":
+                numThreads = TextUtils.getNumberInt(value, -1);
+                return numThreads > 0;
+            case "--classify-threads":
+                classifyThreads = TextUtils.getNumberInt(value, -1);
+                return classifyThreads > 0;
+            case "--index":
+                if (TextUtils.isEmpty(value)) return false;
+                indexFile = new File(value);
+                return true;
+            case "--tv-layout":
+                if (TextUtils.isEmpty(value)) return false;
+                tvLayout = PathTemplate.parse(value);
+                return tvLayout != null;
+            case "--markers":
+                if (TextUtils.isEmpty(value)) return false;
+                try {
+                    FilenameTokenizer.setMarkers(MarkerTrie.load(new File(value)));
+                } catch (IOException e) {
+                    System.out.println("ERROR: loading markers: " + value + ", " + e.getMessage());
+                    return false;
+                }
+                return true;
+            case "--script-batch":
+                scriptBatchSize = TextUtils.getNumberInt(value, -1);
+                return scriptBatchSize > 0;
+            case "--script-delay":
+                scriptDelaySecs = TextUtils.getNumberInt(value, -1);
+                return scriptDelaySecs >= 0;
+            case "--script-threads":
+                scriptThreads = TextUtils.getNumberInt(value, -1);
+                return scriptThreads > 0;
+            case "--script-timeout":
+                scriptTimeoutSecs = TextUtils.getNumberInt(value, -1);
+                return scriptTimeoutSecs >= 0;
+            case "--script-per-folder":
+                isScriptPerFolder = true;
+                return true;
+            case "--copies-per-device":
+                copiesPerDevice = TextUtils.getNumberInt(value, -1);
+                return copiesPerDevice > 0;
+            case "--renames-per-device":
+                renamesPerDevice = TextUtils.getNumberInt(value, -1);
+                return renamesPerDevice > 0;
+            case "--content-dups":
+                isContentDups = true;
+                return true;
+            case "--hash-cache":
+                if (TextUtils.isEmpty(value)) return false;
+                hashCacheFile = new File(value);
+                return true;
+            case "--watch":
+                isWatchMode = true;
+                return true;
+            case "--plan":
+                if (TextUtils.isEmpty(value)) return false;
+                planFile = new File(value);
+                return true;
+            case "--metrics":
+                if (TextUtils.isEmpty(value)) return false;
+                metricsFile = new File(value);
+                return true;
+            case "--events":
+                if (TextUtils.isEmpty(value)) return false;
+                eventFile = new File(value);
+                return true;
+            case "--settle":
+                settleSecs = TextUtils.getNumberInt(value, -1);
+                return settleSecs >= 0;
+            case "--quiet":
+                quietSecs = TextUtils.getNumberInt(value, -1);
+                return quietSecs >= 0;
+            case "--lock-check":
+                isLockCheck = true;
+                return true;
+            case "--no-probe":
+                isProbe = false;
+                return true;
+            case "--min-duration":
+                minDurationSecs = TextUtils.getNumberInt(value, -1);
+                return minDurationSecs >= 0;
+            default:
+                return false;
+        }
     }
 
     private static void processFile(File file) {
-        if (file.isDirectory()) {
-            for (File child : file.listFiles()) {
-                processFile(child);
+        // folders are listed in parallel; files are classified and planned by the next stages as they're found
+        DirectoryWalker walker = new DirectoryWalker(numThreads, scanIndex);
+        walker.walk(file.toPath(), classifyStage::put);
+        executePlan();
+    }
+
+    /**
+     * move everything in the current plan (nothing is moved in test mode) and start a new plan
+     */
+    private static void executePlan() {
+        // wait for everything found so far to be planned
+        classifyStage.drain();
+        planStage.drain();
+        MovePlan plan = movePlan;
+        movePlan = new MovePlan();
+        // source folders may change before the next plan
+        companionFinder.clear();
+        downloadChecker.clear();
+        if (plan.isEmpty()) return;
+
+        System.out.println("plan: " + plan.count(MovePlan.Action.MOVE) + " to move, "
+            + plan.count(MovePlan.Action.DUPLICATE) + " duplicates, "
+            + plan.count(MovePlan.Action.COLLISION) + " collisions, "
+            + plan.count(MovePlan.Action.SKIP) + " skipped");
+        if (planFile != null) {
+            savePlan(plan);
+        }
+        if (isTestMode) return;
+
+        // create all TV/Movie (and season) folders for this plan first, once each
+        Map<File, List<MovePlan.Item>> folderMap = plan.getMovesByFolder();
+        List<MovePlan.Item> moveList = new ArrayList<>();
+        for (Map.Entry<File, List<MovePlan.Item>> entry : folderMap.entrySet()) {
+            File folder = entry.getKey();
+            try {
+                folderCache.createFolder(folder);
+                moveList.addAll(entry.getValue());
+            } catch (IOException e) {
+                System.out.println("ERROR: creating folder: " + folder + ", " + e);
+                for (MovePlan.Item item : entry.getValue()) {
+                    setDecision(item.fileInfo, ScanIndex.Decision.ERROR);
+                    Metrics.counter(Metrics.ERRORS).increment();
+                    logEvent(EventLog.ERROR, item.fileInfo, item.destFile, "creating folder: " + e);
+                }
+            }
+        }
+        for (MovePlan.Item item : moveList) {
+            moveMedia(item);
+        }
+    }
+
+    private static void savePlan(MovePlan plan) {
+        try {
+            Files.write(planFile.toPath(), plan.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("ERROR: saving plan: " + planFile + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * keep running and handle new files under folder as they finish downloading
+     */
+    private static void watchFolder(File folder) {
+        if (mediaWatcher == null) {
+            System.out.println("watch mode requires a folder: " + folder);
+            return;
+        }
+        System.out.println("watching: " + folder + " (settle: " + settleSecs + "s)");
+        ScheduledExecutorService metricsTimer = null;
+        if (metricsFile != null) {
+            metricsTimer = Executors.newSingleThreadScheduledExecutor(ThreadUtils.newThreadFactory("metrics"));
+            metricsTimer.scheduleWithFixedDelay(OrganizeMedia::saveMetrics, 0, METRICS_INTERVAL_SECS, TimeUnit.SECONDS);
+        }
+        try {
+            mediaWatcher.run();
+        } catch (IOException e) {
+            System.out.println("ERROR: watching: " + folder + ", " + e.getMessage());
+        }
+        if (metricsTimer != null) {
+            metricsTimer.shutdown();
+        }
+    }
+
+    private static MediaWatcher createWatcher(File folder) {
+        return new MediaWatcher(folder.toPath(), settleSecs * 1000L, new MediaWatcher.Listener() {
+            @Override
+            public void onFile(DirectoryWalker.ScanEntry entry) {
+                classifyStage.put(entry);
+            }
+
+            @Override
+            public void onBatchComplete() {
+                executePlan();
+                saveIndex();
+                // library may be changed by something else while watching
+                libraryIndex.clear();
+                folderCache.clear();
+            }
+        });
+    }
+
+    /**
+     * classify stage (any thread): skip unchanged files and parse name; result goes to plan stage
+     */
+    private static void handleScanEntry(DirectoryWalker.ScanEntry entry) {
+        long size = entry.attrs.size();
+        long mtime = entry.attrs.lastModifiedTime().toMillis();
+        Metrics.counter(Metrics.FILES_SCANNED).increment();
+        if (eventLog != null) {
+            eventLog.write(eventLog.event(EventLog.SCANNED).add("src", entry.path.toAbsolutePath().toString()).add("size", size));
+        }
+        // skip files that haven't changed since the last run
+        if (scanIndex != null && scanIndex.isUnchanged(entry.path, size, mtime)) {
+            Metrics.counter(Metrics.FILES_UNCHANGED).increment();
+            if (eventLog != null) {
+                eventLog.write(eventLog.event(EventLog.SKIPPED).add("src", entry.path.toAbsolutePath().toString()).add("reason", "unchanged"));
+            }
+            return;
+        }
+        FileInfo fileInfo = new FileInfo(entry.path.toFile());
+        fileInfo.length = size;
+        fileInfo.lastModified = mtime;
+        fileInfo.siblingList = entry.siblingList;
+        parseMedia(fileInfo);
+        planStage.put(fileInfo);
+    }
+
+    /**
+     * plan stage (single thread): add classified file to the plan
+     */
+    private static void planFile(FileInfo fileInfo) {
+        if (fileInfo.skipReason != null) {
+            skipFile(fileInfo, fileInfo.skipDecision, MovePlan.Action.SKIP, fileInfo.skipReason);
+            if (fileInfo.skipDecision == ScanIndex.Decision.INCOMPLETE && mediaWatcher != null) {
+                // look at it again once it's been quiet long enough (or later if a marker/lock is the reason)
+                long delayMs = downloadChecker.getQuietRemaining(fileInfo.lastModified);
+                if (delayMs <= 0) delayMs = INCOMPLETE_RETRY_MS;
+                mediaWatcher.defer(fileInfo.file.toPath(), fileInfo.length, fileInfo.lastModified, delayMs);
             }
         } else {
-            parseMedia(file);
+            planMove(fileInfo);
         }
     }
 
+    /**
+     * save decision for this file to the scan index (if enabled)
+     */
+    private static void setDecision(FileInfo fileInfo, ScanIndex.Decision decision) {
+        if (scanIndex == null || isTestMode) return;
+        scanIndex.putFile(fileInfo.file.toPath(), fileInfo.length, fileInfo.lastModified, decision);
+    }
+
+    /**
+     * file won't be moved; record why in the plan and scan index
+     */
+    private static void skipFile(FileInfo fileInfo, ScanIndex.Decision decision, MovePlan.Action action, String reason) {
+        setDecision(fileInfo, decision);
+        movePlan.addSkip(fileInfo, action, reason);
+        Metrics.counter(action == MovePlan.Action.SKIP ? Metrics.FILES_SKIPPED : Metrics.DUPLICATES).increment();
+        logEvent(action == MovePlan.Action.SKIP ? EventLog.SKIPPED : EventLog.DUPLICATE, fileInfo, null, reason);
+    }
+
+    /**
+     * add event to event log (if enabled)
+     */
+    private static void logEvent(String type, FileInfo fileInfo, File destFile, String reason) {
+        if (eventLog == null) return;
+        eventLog.write(eventLog.event(type).add("src", fileInfo.file).add("dest", destFile).add("reason", reason));
+    }
+
     // Examples:
     // -- TV --
     // Tv.Show.Name.S03E01.720p.AMZN.WEBRip.x264-GalaxyTV.mkv (379.6 MB)
@@ -113,19 +503,26 @@ public class OrganizeMedia {
     // Movie Name 2022 HDTS 1080p x264 AAC - QRips.mkv (1.9 GB)
     // Movie.Name.2022.UltraHD.HEVC.Dual.YG.mkv (13.2 GB)
     // Movie - Name (2022) [Hindi HQ Audio CAM RIP].mkv (5.4 GB)
-    private static FileInfo parseMedia(File file) {
-        String name = file.getName();
+    private static FileInfo parseMedia(FileInfo fileInfo) {
+        String name = fileInfo.file.getName();
         if (!isVideo(name)) {
-            //System.out.println("not a video");
+            fileInfo.setSkipped(ScanIndex.Decision.NOT_VIDEO, "not a video");
+            return null;
+        }
+        if (fileInfo.length < MIN_VIDEO_LENGTH) {
+            fileInfo.setSkipped(ScanIndex.Decision.TOO_SMALL, "too small");
+            return null;
+        }
+        String incompleteReason = downloadChecker.check(fileInfo.file.toPath(), fileInfo.length, fileInfo.lastModified,
+            fileInfo.siblingList);
+        if (incompleteReason != null) {
+            fileInfo.setSkipped(ScanIndex.Decision.INCOMPLETE, "incomplete: " + incompleteReason);
             return null;
         }
-        long length = file.length();
-        if (length < MIN_VIDEO_LENGTH) {
-            //System.out.println("too short");
+        if (isProbe && !probeMedia(fileInfo)) {
             return null;
         }
         // ** VIDEO **
-        FileInfo fileInfo = new FileInfo(file);
         fileInfo.type = MediaType.TYPE_MOVIE;
 
         int extPos = name.lastIndexOf('.');
@@ -134,152 +531,178 @@ public class OrganizeMedia {
         }
 
         // -- get display name --
-        // replace "." with " "
-        name = name.replace('.', ' ');
-        String[] nameArr = name.split(" ");
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < nameArr.length; i++) {
-            String part = nameArr[i];
-            //System.out.println("PART: " + part);
-            if (TextUtils.equalsIgnoreCaseAny(part, "1080p", "720p", "HDTS", "WEB", "webrip", "HEVC", "UltraHD")) {
-                break;
+        long startNs = System.nanoTime();
+        String cacheKey = FilenameTokenizer.getCacheKey(name, fileInfo);
+        ParseCache.ParsedName parsedName = cacheKey != null ? parseCache.get(cacheKey) : null;
+        if (parsedName != null) {
+            fileInfo.name = parsedName.name;
+            fileInfo.type = parsedName.type;
+            fileInfo.destFolder = parsedName.destFolder;
+        } else {
+            // getCacheKey() may have set TV; parseName() decides
+            fileInfo.type = MediaType.TYPE_MOVIE;
+            String displayName = FilenameTokenizer.parseName(name, fileInfo);
+            if (TextUtils.isEmpty(displayName)) {
+                fileInfo.setSkipped(ScanIndex.Decision.SKIPPED, "name not recognized");
+                return null;
             }
 
-            // look for season/episode
-            if (isPatternTv(part, fileInfo)) {
-                break;
+            // change to sentence case
+            fileInfo.name = TextUtils.toSentenceCase(displayName);
+            if (fileInfo.type == MediaType.TYPE_MOVIE) {
+                fileInfo.destFolder = new File(movieFolder, fileInfo.name);
             }
-
-            // look for year
-            // ignore the first part to handle movies like "2001"
-            if (i > 0) {
-                Matcher matcher = YEAR_PATTERN.matcher(part);
-                if (matcher.matches()) {
-                    // got year
-                    if (!TextUtils.startsWith(part, "(")) {
-                        // add year in parens "(year)"
-                        part = "(" + part + ")";
-                    }
-                    sb.append(' ');
-                    sb.append(part);
-
-                    // this could be a movie or TV show - look at the next part to try and figure out which
-                    if (i + 1 < nameArr.length) {
-                        String nextPart = nameArr[i + 1];
-                        isPatternTv(nextPart, fileInfo);
-                    }
-                    break;
-                }
+            if (cacheKey != null) {
+                parseCache.put(cacheKey, new ParseCache.ParsedName(fileInfo.name, fileInfo.type, fileInfo.destFolder));
             }
-
-            // add part to display name
-            if (sb.length() > 0) sb.append(' ');
-            sb.append(part);
         }
-        String displayName = sb.toString();
-        if (TextUtils.isEmpty(displayName)) return null;
-
-        // change to sentence case
-        fileInfo.name = TextUtils.toSentenceCase(displayName);
+        Metrics.histogram(Metrics.PARSE).recordSince(startNs);
+        Metrics.counter(Metrics.FILES_PARSED).increment();
+        if (eventLog != null) {
+            eventLog.write(eventLog.event(EventLog.PARSED).add("src", fileInfo.file).add("name", fileInfo.name)
+                .add("type", fileInfo.type == MediaType.TYPE_TV ? "tv" : "movie").add("us", (System.nanoTime() - startNs) / 1000).add("cached", parsedName != null)
+                .add("container", fileInfo.container != null ? fileInfo.container.format : null)
+                .add("secs", fileInfo.container != null && fileInfo.container.durationMs >= 0 ? fileInfo.container.durationMs / 1000 : -1)
+                .add("height", fileInfo.container != null ? fileInfo.container.height : 0));
+        }
 
         //System.out.println("GOT: " + fileInfo.name + ", type: " + fileInfo.type + ", file: " + file);
-        moveMedia(fileInfo);
-
         return fileInfo;
     }
 
-    private static boolean isPatternTv(String part, FileInfo fileInfo) {
-        Matcher matcher = TV_PATTERN.matcher(part);
-        if (matcher.matches()) {
-            part = part.toUpperCase(Locale.US);
-            // TV show
-            fileInfo.type = MediaType.TYPE_TV;
-            fileInfo.tvVersion = part;
-            try {
-                String seasonStr = part.substring(1, 3);
-                fileInfo.season = Integer.parseInt(seasonStr);
-            } catch (Exception e) {
-                System.out.println("isPatternTv: Exception: " + part + ", " + e.getMessage());
-            }
-            return true;
-        }
-        return false;
-    }
-
-    private static File getDestFolder(FileInfo fileInfo) {
-        if (fileInfo.type == MediaType.TYPE_TV) {
-            return new File(tvFolder, fileInfo.name);
-        } else {
-            return new File(movieFolder, fileInfo.name);
-        }
-    }
-
-    private static void moveMedia(FileInfo fileInfo) {
-        File dest = getDestFolder(fileInfo);
-        // create TV/Movie folder
-        if (!isTestMode) {
-            dest.mkdir();
-        }
-
+    /**
+     * add file to the plan; duplicates are checked here but nothing is created or moved until executePlan()
+     */
+    private static void planMove(FileInfo fileInfo) {
         // create full filename
         File destFile;
         if (fileInfo.type == MediaType.TYPE_TV) {
-            // "<show>/<show> S01E01.ext"
-            destFile = new File(dest, fileInfo.name + " " + fileInfo.tvVersion + fileInfo.ext);
+            // default: "<show>/<show> S01E01.ext"
+            destFile = tvLayout.format(tvFolder, fileInfo);
         } else {
             // "<movie>/<movie> (YEAR).ext"
-            destFile = new File(dest, fileInfo.name + fileInfo.ext);
+            destFile = new File(fileInfo.destFolder, fileInfo.name + fileInfo.ext);
+        }
+        File dest = destFile.getParentFile();
+
+        // check if video already exists at destination
+        long startNs = System.nanoTime();
+        if (isVideoExist(destFile)) {
+            Metrics.histogram(Metrics.DUPLICATE).recordSince(startNs);
+            System.out.println("ALREADY EXISTS: " + destFile + " - FILE: " + fileInfo.file);
+            skipFile(fileInfo, ScanIndex.Decision.DUPLICATE, MovePlan.Action.DUPLICATE, "already exists: " + destFile);
+            return;
+        }
+        // check if same content already exists under a different name
+        File sameFile = contentHasher != null ? contentHasher.findDuplicate(fileInfo.file, fileInfo.length, dest) : null;
+        Metrics.histogram(Metrics.DUPLICATE).recordSince(startNs);
+        if (sameFile != null) {
+            System.out.println("ALREADY EXISTS (same content): " + sameFile + " - FILE: " + fileInfo.file);
+            skipFile(fileInfo, ScanIndex.Decision.DUPLICATE, MovePlan.Action.DUPLICATE, "same content: " + sameFile);
+            return;
+        }
+        MovePlan.Item item = movePlan.addMove(fileInfo, destFile);
+        if (item.action == MovePlan.Action.COLLISION) {
+            System.out.println("ALREADY MOVING: " + destFile + " - FILE: " + fileInfo.file);
+            setDecision(fileInfo, ScanIndex.Decision.DUPLICATE);
+            Metrics.counter(Metrics.DUPLICATES).increment();
+            logEvent(EventLog.DUPLICATE, fileInfo, destFile, item.reason);
+            return;
         }
-
         System.out.println("Moving: " + fileInfo.file + " to: " + destFile);
-        if (!isTestMode) {
-            // check if video already exists at destination
-            if (isVideoExist(destFile)) {
-                System.out.println("ALREADY EXISTS: " + destFile + " - FILE: " + fileInfo.file);
-                return;
-            }
-            // move file to folder
-            boolean isOk = fileInfo.file.renameTo(destFile);
-            if (isOk) {
+
+        // subtitles, .nfo, artwork with matching name (if any) go to the same folder as video
+        for (Map.Entry<File, File> entry : companionFinder.find(fileInfo.file, destFile, fileInfo.siblingList).entrySet()) {
+            System.out.println("Moving COMPANION: " + entry.getKey() + " to: " + entry.getValue());
+            movePlan.addCompanion(item, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void moveMedia(MovePlan.Item item) {
+        FileInfo fileInfo = item.fileInfo;
+        File destFile = item.destFile;
+        // reserve name so other files resolving to the same video are treated as duplicates
+        libraryIndex.add(destFile);
+        // move file to folder (in the background)
+        boolean isQueued = moveScheduler.submit(fileInfo.file.toPath(), destFile.toPath(), new MoveScheduler.Callback() {
+            @Override
+            public void onMoved(FileMover.Result result) {
+                System.out.println("Moved: " + destFile.getName() + " (" + result.describe() + ")");
+                Metrics.counter(Metrics.FILES_MOVED).increment();
+                libraryIndex.onMoved(destFile);
+                if (eventLog != null) {
+                    eventLog.write(eventLog.event(EventLog.MOVED).add("src", fileInfo.file).add("dest", destFile)
+                        .add("copy", result.isCopy).add("bytes", result.bytes).add("ms", result.elapsedMs));
+                }
+                if (contentHasher != null) contentHasher.onMoved(fileInfo.file, destFile);
+                setDecision(fileInfo, ScanIndex.Decision.MOVED);
                 runScript(destFile);
-            } else {
-                System.out.println("ERROR: moving file: " + fileInfo.file + ", to: " + destFile);
+                moveCompanions(item);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                System.out.println("ERROR: moving file: " + fileInfo.file + ", to: " + destFile + ", " + e);
+                Metrics.counter(Metrics.ERRORS).increment();
+                logEvent(EventLog.ERROR, fileInfo, destFile, e.toString());
+                libraryIndex.remove(destFile);
+                folderCache.remove(destFile.getParentFile());
+                setDecision(fileInfo, ScanIndex.Decision.ERROR);
             }
+        });
+        if (!isQueued) {
+            System.out.println("ALREADY MOVING: " + destFile + " - FILE: " + fileInfo.file);
+            setDecision(fileInfo, ScanIndex.Decision.DUPLICATE);
+            Metrics.counter(Metrics.DUPLICATES).increment();
+            logEvent(EventLog.DUPLICATE, fileInfo, destFile, "already moving");
         }
+    }
 
-        // check for subtitle with matching name
-        File subFile = FileUtils.replaceExt(fileInfo.file, ".srt");
-        if (subFile != null && subFile.exists()) {
-            // move to same folder
-            File destSubFile = FileUtils.replaceExt(destFile, ".srt");
-            System.out.println("Moving SUBTITLE: " + subFile + " to: " + destSubFile);
-            if (!isTestMode && destSubFile != null) {
-                subFile.renameTo(destSubFile);
+    /**
+     * move subtitles, etc that go with a video (after the video was moved)
+     */
+    private static void moveCompanions(MovePlan.Item item) {
+        if (item.companions == null) return;
+        for (MovePlan.Companion companion : item.companions) {
+            try {
+                FileMover.move(new File(companion.src).toPath(), new File(companion.dest).toPath());
+            } catch (IOException e) {
+                System.out.println("ERROR: moving COMPANION: " + companion.src + ", " + e);
             }
         }
     }
 
     private static boolean isVideoExist(File file) {
-        // check if video file exists as-is
-        if (file.exists()) return true;
-        // also check if video file exists but with a different extension (.avi, .mkv, etc)
-        String path = file.getAbsolutePath().toLowerCase(Locale.US);
-        // remove extension from video
-        int pos = path.lastIndexOf('.');
-        if (pos < 0) return false;
-        path = path.substring(0, pos);
-        String origExt = path.substring(pos);
-        for (String ext : VIDEO_EXT) {
-            // ignore same extension as video
-            if (TextUtils.equals(origExt, ext)) continue;
-            File f = new File(path + ext);
-            if (f.exists()) {
-                System.out.println("isVideoExist: ALTERNATE found: " + f.getAbsolutePath() + ", " + file.getAbsolutePath());
-                return true;
-            }
+        // same base name with any video extension (.avi, .mkv, etc)
+        return libraryIndex.contains(file);
+    }
+
+    /**
+     * check container header: extension can be wrong (renamed junk) and samples/trailers look like any other video
+     *
+     * @return false if file was skipped
+     */
+    private static boolean probeMedia(FileInfo fileInfo) {
+        long startNs = System.nanoTime();
+        ContainerProbe.Info info;
+        try {
+            info = ContainerProbe.probe(fileInfo.file.toPath());
+        } catch (IOException e) {
+            fileInfo.setSkipped(ScanIndex.Decision.ERROR, "probe failed: " + e.getMessage());
+            return false;
+        } finally {
+            Metrics.histogram(Metrics.PROBE).recordSince(startNs);
+        }
+        if (info == null) {
+            fileInfo.setSkipped(ScanIndex.Decision.UNKNOWN_CONTAINER, "unknown container");
+            return false;
+        }
+        fileInfo.container = info;
+        if (minDurationSecs > 0 && info.durationMs >= 0 && info.durationMs < minDurationSecs * 1000L) {
+            fileInfo.setSkipped(ScanIndex.Decision.SAMPLE, "sample: " + (info.durationMs / 1000) + "s");
+            return false;
         }
-        return false;
+        return true;
     }
 
     private static boolean isVideo(String name) {
@@ -287,29 +710,8 @@ public class OrganizeMedia {
     }
 
     private static void runScript(File dest) {
-        if (runScript == null) return;
-
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        List<String> commandList = new ArrayList<>();
-        commandList.add(runScript.getAbsolutePath());
-        commandList.add(dest.getAbsolutePath());
-        processBuilder.command(commandList);
-        try {
-            System.out.println("running: " + runScript + ", param: " + dest);
-            Process process = processBuilder.start();
-            process.waitFor();
-
-            List<String> resultList = readInputStream(process.getInputStream());
-            if (!resultList.isEmpty()) {
-                log.trace("runScript: RESULTS: {}", GsonHelper.toJson(resultList));
-            }
-            List<String> errorList = readInputStream(process.getErrorStream());
-            if (!errorList.isEmpty()) {
-                log.error("runScript: ERROR: {}", GsonHelper.toJson(errorList));
-            }
-        } catch (Exception e) {
-            System.out.println("ERROR: " + e.getMessage());
-        }
+        if (scriptRunner == null) return;
+        scriptRunner.add(dest);
     }
 
     enum MediaType {
@@ -325,38 +727,60 @@ public class OrganizeMedia {
         int season;
         int episode;
         String tvVersion;
+        long length;
+        long lastModified;
+        // null unless probed
+        ContainerProbe.Info container;
+        // movie folder under movieFolder (set with name)
+        File destFolder;
+        // names of files in the same folder (from the walker); null if not listed
+        List<String> siblingList;
+        // set if file won't be moved
+        ScanIndex.Decision skipDecision;
+        String skipReason;
 
         public FileInfo(File file) {
             this.file = file;
         }
-    }
 
-    private static List<String> readInputStream(InputStream inputStream) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        String line;
-        List<String> resultList = new ArrayList<>();
-        try {
-            while (true) {
-                line = reader.readLine();
-                if (line == null) break;
-                else if (line.isEmpty()) continue;
-                //log.debug("runScript: {}", line);
-                resultList.add(line);
-            }
-            reader.close();
-        } catch (IOException e) {
-            log.error("readInputStream: Exception: {}", e.getMessage());
+        void setSkipped(ScanIndex.Decision decision, String reason) {
+            skipDecision = decision;
+            skipReason = reason;
         }
-        return resultList;
     }
 
     private static void printUsage() {
         System.out.println("OrganizeMedia: Version: " + Build.versionName + ", Built: " + Build.buildDate);
         System.out.println("Usage:");
-        System.out.println("java OrganizeMedia <TV FOLDER> <MOVIE FOLDER> <MEDIA (folder or file)> <SCRIPT>");
+        System.out.println("java OrganizeMedia [OPTIONS] <TV FOLDER> <MOVIE FOLDER> <MEDIA (folder or file)> <SCRIPT>");
         System.out.println("  - <TV FOLDER>: folder to move TV shows to");
         System.out.println("  - <MOVIE FOLDER>: folder to move movies to");
         System.out.println("  - <MEDIA>: folder or file to process");
         System.out.println("  - <SCRIPT>: *optional script to run when complete. Will be run with destination tv/movie folder");
+        System.out.println("Options:");
+        System.out.println("  --threads=N: number of folders to list in parallel (default: # of CPUs)");
+        System.out.println("  --classify-threads=N: number of files classified (name parsed) in parallel (default: 2)");
+        System.out.println("  --index=FILE: save scan results to FILE; folders that haven't changed are skipped on the next run");
+        System.out.println("  --tv-layout=TEMPLATE: where TV episodes go under <TV FOLDER> (default: " + PathTemplate.DEFAULT_TV + ")");
+        System.out.println("      fields: {show}, {season}, {episode}, {SxxEyy}, {ext}; ie: \"{show}/Season {season}/{show} {SxxEyy}{ext}\"");
+        System.out.println("  --markers=FILE: release markers (one per line) to use instead of the built-in list");
+        System.out.println("  --copies-per-device=N: max files copied at the same time between 2 devices (default: 1)");
+        System.out.println("  --renames-per-device=N: max files moved at the same time within 1 device (default: 4)");
+        System.out.println("  --content-dups: also skip videos with the same content as a video in the destination folder");
+        System.out.println("  --hash-cache=FILE: (content-dups) save file hashes to FILE so they're not computed again");
+        System.out.println("  --script-batch=N: run <SCRIPT> once with up to N moved files as params (default: 1)");
+        System.out.println("  --script-delay=N: max seconds a moved file waits for its batch before <SCRIPT> is run (default: 30)");
+        System.out.println("  --script-per-folder: batch moved files by destination folder");
+        System.out.println("  --script-threads=N: max number of scripts running at the same time (default: 2)");
+        System.out.println("  --script-timeout=N: kill script after N seconds; 0 = never (default: 300)");
+        System.out.println("  --plan=FILE: save the plan (every file found and what is done with it) to FILE as JSON; use with test to only plan");
+        System.out.println("  --events=FILE: append every decision (scanned, skipped, parsed, moved, ..) to FILE as JSON lines");
+        System.out.println("  --metrics=FILE: save counters and stage timings to FILE in Prometheus text format (every " + METRICS_INTERVAL_SECS + "s in watch mode)");
+        System.out.println("  --watch: keep running and organize new files as they're added to <MEDIA>");
+        System.out.println("  --settle=N: (watch mode) seconds a file must stop growing before it's moved (default: 10)");
+        System.out.println("  --quiet=N: skip videos modified in the last N seconds; they're still downloading (default: 0; watch mode: " + WATCH_QUIET_SECS + ")");
+        System.out.println("  --no-probe: don't read container headers; trust the file extension");
+        System.out.println("  --min-duration=N: skip videos shorter than N seconds (samples, trailers); 0 = never (default: 180)");
+        System.out.println("  --lock-check: also skip videos that can't be locked (open for writing by another program)");
     }
 }
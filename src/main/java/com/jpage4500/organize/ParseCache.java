@@ -0,0 +1,57 @@
+package com.jpage4500.organize;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of parsed names keyed by the release name up to the SxxEyy/year token (see {@link FilenameTokenizer#getCacheKey})
+ * - a season folder has many files that only differ after that token; only the first one is tokenized and sentence cased
+ * - hits/misses are counted in {@link Metrics}
+ * NOTE: safe to call from any thread
+ */
+public class ParseCache {
+    public static class ParsedName {
+        // sentence case display name
+        public final String name;
+        public final OrganizeMedia.MediaType type;
+        // movie: destination folder; null for TV (destination depends on the episode)
+        public final File destFolder;
+
+        public ParsedName(String name, OrganizeMedia.MediaType type, File destFolder) {
+            this.name = name;
+            this.type = type;
+            this.destFolder = destFolder;
+        }
+    }
+
+    private final Map<String, ParsedName> cacheMap;
+
+    public ParseCache(int maxSize) {
+        // access order: least recently used entry is removed first
+        cacheMap = new LinkedHashMap<String, ParsedName>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParsedName> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return cached name; null if not found
+     */
+    public ParsedName get(String key) {
+        ParsedName parsedName;
+        synchronized (cacheMap) {
+            parsedName = cacheMap.get(key);
+        }
+        Metrics.counter(parsedName != null ? Metrics.PARSE_CACHE_HITS : Metrics.PARSE_CACHE_MISSES).increment();
+        return parsedName;
+    }
+
+    public void put(String key, ParsedName parsedName) {
+        synchronized (cacheMap) {
+            cacheMap.put(key, parsedName);
+        }
+    }
+}
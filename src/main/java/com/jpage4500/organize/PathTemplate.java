@@ -0,0 +1,112 @@
+package com.jpage4500.organize;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * destination of a video relative to the TV folder, ie: "{show}/Season {season}/{show} {SxxEyy}{ext}"
+ * - fields: {show}, {season} and {episode} (2 digits), {SxxEyy} (ie: "S01E02"), {ext} (ie: ".mkv")
+ * - '/' separates folders
+ * - template is parsed once; format() only appends
+ */
+public class PathTemplate {
+    // "<show>/<show> S01E01.ext"
+    public static final String DEFAULT_TV = "{show}/{show} {SxxEyy}{ext}";
+
+    private enum Field {
+        SHOW,
+        SEASON,
+        EPISODE,
+        TV_VERSION,
+        EXT
+    }
+
+    // String (literal text) or Field
+    private final List<Object> partList;
+
+    private PathTemplate(List<Object> partList) {
+        this.partList = partList;
+    }
+
+    /**
+     * @return parsed template; null if it contains an unknown field or unclosed '{'
+     */
+    public static PathTemplate parse(String template) {
+        List<Object> partList = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) {
+                partList.add(template.substring(pos));
+                break;
+            }
+            int close = template.indexOf('}', open);
+            if (close < 0) return null;
+            if (open > pos) partList.add(template.substring(pos, open));
+            Field field = getField(template.substring(open + 1, close));
+            if (field == null) return null;
+            partList.add(field);
+            pos = close + 1;
+        }
+        return partList.isEmpty() ? null : new PathTemplate(partList);
+    }
+
+    private static Field getField(String name) {
+        switch (name) {
+            case "show":
+                return Field.SHOW;
+            case "season":
+                return Field.SEASON;
+            case "episode":
+                return Field.EPISODE;
+            case "SxxEyy":
+                return Field.TV_VERSION;
+            case "ext":
+                return Field.EXT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return destination file under folder
+     */
+    public File format(File folder, OrganizeMedia.FileInfo fileInfo) {
+        StringBuilder sb = new StringBuilder(64);
+        for (Object part : partList) {
+            if (part instanceof String) {
+                sb.append((String) part);
+                continue;
+            }
+            switch ((Field) part) {
+                case SHOW:
+                    sb.append(fileInfo.name);
+                    break;
+                case SEASON:
+                    appendNumber(sb, fileInfo.season);
+                    break;
+                case EPISODE:
+                    appendNumber(sb, fileInfo.episode);
+                    break;
+                case TV_VERSION:
+                    sb.append(fileInfo.tvVersion);
+                    break;
+                case EXT:
+                    sb.append(fileInfo.ext);
+                    break;
+            }
+        }
+        String path = sb.toString();
+        if (File.separatorChar != '/') path = path.replace('/', File.separatorChar);
+        return new File(folder, path);
+    }
+
+    /**
+     * append number with at least 2 digits (ie: "01")
+     */
+    private static void appendNumber(StringBuilder sb, int number) {
+        if (number < 10) sb.append('0');
+        sb.append(number);
+    }
+}
@@ -0,0 +1,141 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.ThreadUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * one stage of the organize pipeline: a bounded queue worked by N threads
+ * - put() blocks while the queue is full, so a slow stage holds back the stages feeding it (backpressure)
+ * instead of buffering without limit
+ * - drain() waits until everything put so far is handled; the stage keeps running (ie: next batch in watch mode)
+ * - queue depth, max queue depth and items handled are published to {@link Metrics}
+ */
+public class PipelineStage<T> {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PipelineStage.class);
+
+    public interface Handler<T> {
+        void handle(T item);
+    }
+
+    // queued once per worker to stop it
+    private static final Object STOP = new Object();
+
+    private final String name;
+    private final Handler<T> handler;
+    private final BlockingQueue<Object> queue;
+    private final Thread[] threadArr;
+
+    // items put but not handled yet (queued + being handled)
+    private long inFlight;
+    private final Object lock = new Object();
+    private final AtomicLong maxDepth = new AtomicLong();
+    private final LongAdder itemCount;
+
+    /**
+     * @param numWorkers number of threads handling items; use 1 if handler isn't thread safe or order matters
+     * @param queueSize  max items waiting before put() blocks
+     */
+    public PipelineStage(String name, int numWorkers, int queueSize, Handler<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        itemCount = Metrics.counter("stage_" + name + "_items");
+        Metrics.gauge("queue_depth_" + name, queue::size);
+        Metrics.gauge("queue_max_depth_" + name, maxDepth::get);
+        ThreadFactory threadFactory = ThreadUtils.newThreadFactory(name);
+        threadArr = new Thread[Math.max(1, numWorkers)];
+        for (int i = 0; i < threadArr.length; i++) {
+            threadArr[i] = threadFactory.newThread(this::run);
+            threadArr[i].start();
+        }
+    }
+
+    /**
+     * queue item; blocks while queue is full
+     */
+    public void put(T item) {
+        synchronized (lock) {
+            inFlight++;
+        }
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done();
+            return;
+        }
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * wait until every item put so far has been handled
+     */
+    public void drain() {
+        synchronized (lock) {
+            while (inFlight > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * handle everything queued then stop workers
+     */
+    public void close() {
+        drain();
+        for (Thread thread : threadArr) {
+            try {
+                queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for (Thread thread : threadArr) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == STOP) return;
+            try {
+                handler.handle((T) item);
+            } catch (Exception e) {
+                log.error("{}: Exception: {}, {}", name, item, e.getMessage());
+            } finally {
+                itemCount.increment();
+                done();
+            }
+        }
+    }
+
+    private void done() {
+        synchronized (lock) {
+            inFlight--;
+            if (inFlight == 0) lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.GsonHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * on-disk index of the last scan; lets a rescan skip folders that haven't changed since the last run
+ * - folders are keyed by absolute path and hold their mtime, sub-folders and the last decision for every file
+ * - a folder is only skipped if its mtime is the same AND every file in it had a final decision (ie: not "too small")
+ */
+public class ScanIndex {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ScanIndex.class);
+
+    private static final int VERSION = 1;
+
+    public enum Decision {
+        MOVED(true),
+        DUPLICATE(true),
+        NOT_VIDEO(true),
+        // name couldn't be parsed
+        SKIPPED(true),
+        // could still be downloading; check again next time
+        TOO_SMALL(false),
+        // still being written (partial marker, recently modified or locked)
+        INCOMPLETE(false),
+        // video extension but container header not recognized; check again next time (may be supported later)
+        UNKNOWN_CONTAINER(false),
+        // shorter than --min-duration; check again next time (duration may not be final yet or limit may change)
+        SAMPLE(false),
+        ERROR(false);
+
+        final boolean isFinal;
+
+        Decision(boolean isFinal) {
+            this.isFinal = isFinal;
+        }
+    }
+
+    static class FileEntry {
+        long size;
+        long mtime;
+        Decision decision;
+    }
+
+    static class DirEntry {
+        long mtime;
+        List<String> dirs = new ArrayList<>();
+        Map<String, FileEntry> files = new ConcurrentHashMap<>();
+    }
+
+    private static class IndexData {
+        int version;
+        Map<String, DirEntry> dirs;
+    }
+
+    private final File indexFile;
+    // entries from the last run
+    private final Map<String, DirEntry> prevDirMap;
+    // entries seen during this run (only these are saved)
+    private final Map<String, DirEntry> dirMap = new ConcurrentHashMap<>();
+
+    private ScanIndex(File indexFile, Map<String, DirEntry> prevDirMap) {
+        this.indexFile = indexFile;
+        this.prevDirMap = prevDirMap;
+    }
+
+    /**
+     * load index from file; returns an empty index if file doesn't exist or can't be read
+     */
+    public static ScanIndex load(File indexFile) {
+        Map<String, DirEntry> prevDirMap = new HashMap<>();
+        if (indexFile.exists()) {
+            try {
+                String json = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+                IndexData data = GsonHelper.fromJson(json, IndexData.class);
+                if (data != null && data.version == VERSION && data.dirs != null) {
+                    prevDirMap = data.dirs;
+                }
+            } catch (IOException e) {
+                log.error("load: Exception: {}, {}", indexFile, e.getMessage());
+            }
+        }
+        log.debug("load: {} folders, {}", prevDirMap.size(), indexFile);
+        return new ScanIndex(indexFile, prevDirMap);
+    }
+
+    /**
+     * @return list of sub-folders if folder is unchanged since the last run (and can be skipped); null if folder must be listed
+     */
+    public List<Path> getUnchangedSubDirs(Path dir, long mtime) {
+        String key = dir.toAbsolutePath().toString();
+        DirEntry entry = prevDirMap.get(key);
+        if (entry == null || entry.mtime != mtime || entry.dirs == null || entry.files == null) return null;
+        for (FileEntry fileEntry : entry.files.values()) {
+            if (fileEntry.decision == null || !fileEntry.decision.isFinal) return null;
+        }
+        // carry forward (copy so new decisions can be added safely from any thread)
+        DirEntry copy = new DirEntry();
+        copy.mtime = entry.mtime;
+        copy.dirs.addAll(entry.dirs);
+        copy.files.putAll(entry.files);
+        dirMap.put(key, copy);
+        List<Path> subDirList = new ArrayList<>();
+        for (String name : entry.dirs) {
+            subDirList.add(dir.resolve(name));
+        }
+        return subDirList;
+    }
+
+    /**
+     * record a folder that was just listed
+     * - every file starts with no decision; a file that never gets one (ie: exception while classifying) keeps the
+     * folder from being skipped next time
+     * NOTE: call before any of its files are handed off so file decisions aren't lost
+     */
+    public void putDir(Path dir, long mtime, List<Path> subDirList, List<String> fileNameList) {
+        DirEntry entry = new DirEntry();
+        entry.mtime = mtime;
+        for (Path subDir : subDirList) {
+            entry.dirs.add(subDir.getFileName().toString());
+        }
+        for (String fileName : fileNameList) {
+            entry.files.put(fileName, new FileEntry());
+        }
+        dirMap.put(dir.toAbsolutePath().toString(), entry);
+    }
+
+    /**
+     * @return true if file is unchanged since the last run and had a final decision (ie: no need to look at it again)
+     * - the previous decision is carried forward
+     */
+    public boolean isUnchanged(Path file, long size, long mtime) {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent == null) return false;
+        DirEntry dirEntry = prevDirMap.get(parent.toString());
+        if (dirEntry == null || dirEntry.files == null) return false;
+        FileEntry entry = dirEntry.files.get(file.getFileName().toString());
+        if (entry == null || entry.size != size || entry.mtime != mtime) return false;
+        if (entry.decision == null || !entry.decision.isFinal) return false;
+        putFile(file, size, mtime, entry.decision);
+        return true;
+    }
+
+    /**
+     * @return true if file had the same size and mtime in the last run (whatever the decision was)
+     */
+    public boolean isSameAsLastRun(Path file, long size, long mtime) {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent == null) return false;
+        DirEntry dirEntry = prevDirMap.get(parent.toString());
+        if (dirEntry == null || dirEntry.files == null) return false;
+        FileEntry entry = dirEntry.files.get(file.getFileName().toString());
+        return entry != null && entry.size == size && entry.mtime == mtime;
+    }
+
+    public void putFile(Path file, long size, long mtime, Decision decision) {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent == null) return;
+        FileEntry entry = new FileEntry();
+        entry.size = size;
+        entry.mtime = mtime;
+        entry.decision = decision;
+        // folder is normally added by putDir(); mtime 0 if not (ie: a single file was passed in)
+        DirEntry dirEntry = dirMap.computeIfAbsent(parent.toString(), key -> new DirEntry());
+        dirEntry.files.put(file.getFileName().toString(), entry);
+    }
+
+    /**
+     * write entries seen during this run to disk (write temp file + rename)
+     */
+    public void save() {
+        IndexData data = new IndexData();
+        data.version = VERSION;
+        data.dirs = dirMap;
+        File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), GsonHelper.toJson(data).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("save: {} folders, {}", dirMap.size(), indexFile);
+        } catch (IOException e) {
+            log.error("save: Exception: {}, {}", indexFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.jpage4500.organize;
+
+import com.jpage4500.organize.utils.ThreadUtils;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * runs the post-move script with the destination path(s) of moved files as arguments
+ * - maxBatchSize 1: script runs once per file (as before)
+ * - maxBatchSize > 1: paths are collected and the script runs once per batch; a batch runs when it's full,
+ * when the oldest path has waited maxDelayMs, or on flush()
+ * - groupByFolder: a separate batch is kept for each destination folder
+ * - scripts run in the background on a bounded pool (maxRunning) so moves keep flowing; output is streamed to the
+ * logger while the script runs and a script still running after timeoutMs is killed
+ */
+public class ScriptRunner {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ScriptRunner.class);
+
+    private final File script;
+    private final int maxBatchSize;
+    private final long maxDelayMs;
+    private final boolean groupByFolder;
+    private final long timeoutMs;
+
+    // max number of batches waiting for a free slot before callers run scripts themselves
+    private static final int MAX_QUEUED = 100;
+    // max time to wait for output to be drained once script has exited
+    private static final long STREAM_WAIT_MS = 5000;
+
+    private final ExecutorService executor;
+    // drains stdout/stderr of running scripts
+    private final ExecutorService streamExecutor;
+
+    // destination folder (or null if not grouping) -> pending paths
+    private final Map<File, List<File>> pendingMap = new LinkedHashMap<>();
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> delayFuture;
+    private EventLog eventLog;
+
+    /**
+     * @param maxRunning max number of scripts running at the same time
+     * @param timeoutMs  kill script if it runs longer than this (0 = no timeout)
+     */
+    public ScriptRunner(File script, int maxBatchSize, long maxDelayMs, boolean groupByFolder, int maxRunning, long timeoutMs) {
+        this.script = script;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayMs = maxDelayMs;
+        this.groupByFolder = groupByFolder;
+        this.timeoutMs = timeoutMs;
+        int numThreads = Math.max(1, maxRunning);
+        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(MAX_QUEUED);
+        executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+            queue, ThreadUtils.newThreadFactory("script"), new ThreadPoolExecutor.CallerRunsPolicy());
+        Metrics.gauge("queue_depth_notify", queue::size);
+        streamExecutor = Executors.newCachedThreadPool(ThreadUtils.newThreadFactory("script-io"));
+    }
+
+    /**
+     * @param eventLog *optional log to add a "script-ran" event to after each run
+     */
+    public void setEventLog(EventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * add destination of a moved file; script may run now or later depending on batch settings
+     */
+    public void add(File dest) {
+        List<File> readyList = null;
+        synchronized (this) {
+            File key = groupByFolder ? dest.getParentFile() : null;
+            List<File> fileList = pendingMap.computeIfAbsent(key, k -> new ArrayList<>());
+            fileList.add(dest);
+            if (fileList.size() >= maxBatchSize) {
+                readyList = pendingMap.remove(key);
+            }
+            if (pendingMap.isEmpty()) {
+                cancelDelay();
+            } else if (delayFuture == null && maxDelayMs > 0) {
+                // run whatever is pending once the oldest path has waited long enough
+                delayFuture = getTimer().schedule(this::flush, maxDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (readyList != null) {
+            run(readyList);
+        }
+    }
+
+    /**
+     * run script for everything pending
+     */
+    public void flush() {
+        List<List<File>> batchList;
+        synchronized (this) {
+            cancelDelay();
+            batchList = new ArrayList<>(pendingMap.values());
+            pendingMap.clear();
+        }
+        for (List<File> fileList : batchList) {
+            run(fileList);
+        }
+    }
+
+    /**
+     * flush and wait for running scripts to finish
+     */
+    public void close() {
+        flush();
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdown();
+                timer = null;
+            }
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.debug("close: waiting for scripts to finish..");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        streamExecutor.shutdown();
+    }
+
+    private ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(ThreadUtils.newThreadFactory("script-timer"));
+        }
+        return timer;
+    }
+
+    private void cancelDelay() {
+        if (delayFuture != null) {
+            delayFuture.cancel(false);
+            delayFuture = null;
+        }
+    }
+
+    private void run(List<File> fileList) {
+        if (fileList.isEmpty()) return;
+        executor.execute(() -> execute(fileList));
+    }
+
+    private void execute(List<File> fileList) {
+        ProcessBuilder processBuilder = new ProcessBuilder();
+        List<String> commandList = new ArrayList<>();
+        commandList.add(script.getAbsolutePath());
+        for (File file : fileList) {
+            commandList.add(file.getAbsolutePath());
+        }
+        processBuilder.command(commandList);
+        try {
+            if (fileList.size() == 1) {
+                System.out.println("running: " + script + ", param: " + fileList.get(0));
+            } else {
+                System.out.println("running: " + script + ", params: " + fileList.size());
+            }
+            long startMs = System.currentTimeMillis();
+            Process process = processBuilder.start();
+            // drain both streams while script runs so a chatty script can't block on a full pipe
+            Future<?> outFuture = streamExecutor.submit(() -> logStream(process.getInputStream(), false));
+            Future<?> errFuture = streamExecutor.submit(() -> logStream(process.getErrorStream(), true));
+
+            boolean isDone;
+            if (timeoutMs > 0) {
+                isDone = process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+            } else {
+                process.waitFor();
+                isDone = true;
+            }
+            if (!isDone) {
+                System.out.println("ERROR: script timed out after " + timeoutMs + "ms: " + script);
+                // kill child processes too; they can hold stdout/stderr open
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+                process.waitFor();
+            }
+            waitForStream(outFuture);
+            waitForStream(errFuture);
+            long elapsedMs = System.currentTimeMillis() - startMs;
+            Metrics.histogram(Metrics.SCRIPT).record(elapsedMs * 1000000);
+            Metrics.counter(Metrics.SCRIPTS_RUN).increment();
+            log.trace("runScript: exit:{}, {}ms, files:{}", process.exitValue(), elapsedMs, fileList.size());
+            if (eventLog != null) {
+                eventLog.write(eventLog.event(EventLog.SCRIPT_RAN).add("script", script).add("dest", fileList.get(0))
+                    .add("files", fileList.size()).add("exit", process.exitValue()).add("timeout", !isDone).add("ms", elapsedMs));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("ERROR: " + e.getMessage());
+        }
+    }
+
+    private static void waitForStream(Future<?> future) throws InterruptedException {
+        try {
+            future.get(STREAM_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // stream held open by something else; stop reading it
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * log each line of script output as it's written
+     */
+    private static void logStream(InputStream inputStream, boolean isError) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (isError) log.error("runScript: ERROR: {}", line);
+                else log.trace("runScript: {}", line);
+            }
+        } catch (IOException e) {
+            // expected when script is killed
+            log.debug("logStream: Exception: {}", e.getMessage());
+        }
+    }
+}
@@ -1,20 +1,20 @@
 package com.jpage4500.organize.logging;
 
-import com.jpage4500.organize.utils.FileUtils;
 import org.slf4j.helpers.FormattingTuple;
 import org.slf4j.helpers.MarkerIgnoringBase;
 import org.slf4j.helpers.MessageFormatter;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.UnknownHostException;
-import java.util.Date;
 
 public class AppLogger extends MarkerIgnoringBase {
     private static final long serialVersionUID = -1227274521521287937L;
 
+    // reused per thread to build each line
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_BUILDER_SIZE = 16 * 1024;
+
     private final AppLoggerFactory appLoggerFactory;
 
     private final String fullName;
@@ -231,6 +231,8 @@ public class AppLogger extends MarkerIgnoringBase {
 
     /**
      * handle everything log() method:
+     * - line is built in a reused (per thread) buffer and written to the console with 1 call, so lines from
+     * different threads don't interleave
      * - logs to file if enabled
      */
     private void log(int logLevel, String message, Throwable tr) {
@@ -241,21 +243,21 @@ public class AppLogger extends MarkerIgnoringBase {
 
         String replaceNewlinesWith = appLoggerFactory.getReplaceNewlinesWith();
         if (replaceNewlinesWith != null) {
-            message = message.replaceAll("\\n", replaceNewlinesWith);
+            message = message.replace("\n", replaceNewlinesWith);
         }
 
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+
         // date
-        String dateFormat = appLoggerFactory.getDateFormat().format(new Date());
-        System.out.print(dateFormat);
-        System.out.print(": ");
+        sb.append(appLoggerFactory.getDateText(System.currentTimeMillis())).append(": ");
 
         // thread
         long threadId = Thread.currentThread().getId();
-        boolean isMainThread = appLoggerFactory.getMainThreadId() == threadId;
-        if (isMainThread) {
-            System.out.print("[UI]: ");
+        if (appLoggerFactory.getMainThreadId() == threadId) {
+            sb.append("[UI]: ");
         } else {
-            System.out.print("[" + threadId + "]: ");
+            sb.append('[').append(threadId).append("]: ");
         }
 
         // log level
@@ -280,50 +282,24 @@ public class AppLogger extends MarkerIgnoringBase {
                 levelChar = '?';
                 break;
         }
-        System.out.print(levelChar);
-        System.out.print(": ");
+        sb.append(levelChar).append(": ");
 
         // class name
-        System.out.print(name);
-        System.out.print(": ");
+        sb.append(name).append(": ");
 
         // message
-        System.out.println(message);
+        sb.append(message).append('\n');
+
+        String line = sb.toString();
+        if (sb.capacity() > MAX_BUILDER_SIZE) {
+            // don't hold on to a huge buffer after a long message (ie: stack trace)
+            BUILDER.remove();
+        }
+        System.out.print(line);
 
-        // log to file (if enabled)
+        // log to file (if enabled); written in a separate thread
         if (appLoggerFactory.shouldLogToFile(logLevel)) {
-            String finalMessage = message;
-            // log to file in a separate thread
-            appLoggerFactory.getFileExecutorService().submit(() -> {
-                File saveFile = appLoggerFactory.getFileLog();
-                try {
-                    FileWriter writer = new FileWriter(saveFile, true);
-                    writer.write(dateFormat);
-                    writer.write(": ");
-                    if (isMainThread) {
-                        writer.write("[UI]: ");
-                    } else {
-                        writer.write("[" + threadId + "]: ");
-                    }
-                    writer.write(levelChar);
-                    writer.write(": ");
-                    writer.write(name);
-                    writer.write(": ");
-                    writer.write(finalMessage);
-                    writer.write('\n');
-
-                    writer.flush();
-                    writer.close();
-
-                    // check if file size too large and truncate
-                    if (saveFile.length() > appLoggerFactory.getMaxFileSize()) {
-                        FileUtils.truncateFile(saveFile);
-                    }
-                } catch (Exception e) {
-                    // do not use log.xx methods to avoid recursion
-                    System.out.println("Exception: " + e.getMessage());
-                }
-            });
+            appLoggerFactory.getFileAppender().append(line);
         }
     }
 
@@ -3,12 +3,12 @@ package com.jpage4500.organize.logging;
 import org.slf4j.ILoggerFactory;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * An implementation of {@link ILoggerFactory} which always returns {@link AppLogger} instances.
@@ -26,12 +26,31 @@ public class AppLoggerFactory implements ILoggerFactory {
     private boolean logToFile;
     private int fileLogLevel = Log.DEBUG;
     private File fileLog;
-    private final long maxFileSize = (1000000); // 1 Meg;
-    private ExecutorService fileExecutorService;
+    private long maxFileSize = (1000000); // 1 Meg;
+    // old log files to keep, start a new file each day, gzip old files
+    private int maxLogFiles = 5;
+    private boolean rollDaily;
+    private boolean compressLogFiles;
+    private FileAppender fileAppender;
 
     private final ConcurrentHashMap<String, AppLogger> nameToLogMap = new ConcurrentHashMap<>();
 
-    private final SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm:ss", Locale.US);
+    // thread-safe; only used once per second (see getDateText())
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd HH:mm:ss", Locale.US)
+        .withZone(ZoneId.systemDefault());
+
+    private static class DateText {
+        final long second;
+        final String text;
+
+        DateText(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    // last formatted date; replaced (not modified) so it's safe to read from any thread
+    private volatile DateText dateText = new DateText(-1, "");
 
 
     /**
@@ -100,6 +119,34 @@ public class AppLoggerFactory implements ILoggerFactory {
         this.fileLogLevel = fileLogLevel;
     }
 
+    /**
+     * @param maxFileSize log file is rolled over to a new file once it reaches this size (default = 1 Meg)
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @param maxLogFiles number of old log files to keep (default = 5)
+     */
+    public void setMaxLogFiles(int maxLogFiles) {
+        this.maxLogFiles = maxLogFiles;
+    }
+
+    /**
+     * @param rollDaily true to also start a new log file each day
+     */
+    public void setRollDaily(boolean rollDaily) {
+        this.rollDaily = rollDaily;
+    }
+
+    /**
+     * @param compressLogFiles true to gzip old log files
+     */
+    public void setCompressLogFiles(boolean compressLogFiles) {
+        this.compressLogFiles = compressLogFiles;
+    }
+
     @Override
     public org.slf4j.Logger getLogger(final String name) {
         AppLogger appLogger = this.nameToLogMap.get(name);
@@ -160,8 +207,17 @@ public class AppLoggerFactory implements ILoggerFactory {
         return this.logLevel <= logLevel;
     }
 
-    public SimpleDateFormat getDateFormat() {
-        return sdf;
+    /**
+     * @return time formatted as "MM/dd HH:mm:ss"; formatted at most once per second
+     */
+    public String getDateText(long timeMs) {
+        long second = timeMs / 1000;
+        DateText current = dateText;
+        if (current.second != second) {
+            current = new DateText(second, DATE_FORMAT.format(Instant.ofEpochMilli(timeMs)));
+            dateText = current;
+        }
+        return current.text;
     }
 
     public long getMainThreadId() {
@@ -183,11 +239,11 @@ public class AppLoggerFactory implements ILoggerFactory {
         return fileLog;
     }
 
-    public ExecutorService getFileExecutorService() {
-        if (fileExecutorService == null) {
-            fileExecutorService = Executors.newSingleThreadExecutor();
+    public synchronized FileAppender getFileAppender() {
+        if (fileAppender == null) {
+            fileAppender = new FileAppender(getFileLog(), maxFileSize, maxLogFiles, rollDaily, compressLogFiles);
         }
-        return fileExecutorService;
+        return fileAppender;
     }
 
     public long getMaxFileSize() {
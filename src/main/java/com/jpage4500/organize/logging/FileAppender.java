@@ -0,0 +1,308 @@
+package com.jpage4500.organize.logging;
+
+import com.jpage4500.organize.utils.ThreadUtils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * appends log lines to a file from a single background thread
+ * - file is kept open; lines are taken from a queue in batches and written through a buffer
+ * - buffer is flushed once FLUSH_SIZE bytes are pending or FLUSH_MS after the last flush
+ * - file size is tracked in memory (no File.length() per line)
+ * - everything queued is written when the JVM shuts down
+ * - rolling: once the file reaches maxFileSize (or the day changes if rollDaily) it's renamed to a dated segment
+ * (ie: "device.log.2024-02-15_093012"), optionally gzipped; only the newest maxFiles segments are kept
+ * - segments are gzipped on their own thread so the writer thread only does the rename
+ * NOTE: do not use log.xx methods in here to avoid recursion
+ */
+public class FileAppender {
+    private static final int FLUSH_SIZE = 8 * 1024;
+    private static final long FLUSH_MS = 1000;
+    private static final int MAX_BATCH = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter SEGMENT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss");
+    private static final int SEGMENT_TIME_LEN = "yyyy-MM-dd_HHmmss".length();
+
+    // queued to stop writer thread
+    private static final String STOP = new String("");
+
+    private final File file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final boolean rollDaily;
+    private final boolean compress;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    // gzips rolled segments (created on first roll)
+    private ExecutorService compressExecutor;
+    // segments rolled but not gzipped yet; never deleted
+    private final Set<String> pendingCompressSet = ConcurrentHashMap.newKeySet();
+
+    // only used by writer thread
+    private OutputStream outputStream;
+    private long fileSize;
+    private long pendingBytes;
+    private long lastFlushMs;
+    // start of the next day (rollDaily)
+    private long nextRollMs;
+
+    /**
+     * @param maxFiles  number of old segments to keep
+     * @param rollDaily also start a new file each day
+     * @param compress  gzip old segments
+     */
+    public FileAppender(File file, long maxFileSize, int maxFiles, boolean rollDaily, boolean compress) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.rollDaily = rollDaily;
+        this.compress = compress;
+        thread = new Thread(this::run, "log-file");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-file-shutdown"));
+    }
+
+    /**
+     * queue a line to be written (should end with a newline)
+     */
+    public void append(String line) {
+        queue.offer(line);
+    }
+
+    /**
+     * write everything queued and close file; lines appended after this are dropped
+     */
+    public void close() {
+        if (!thread.isAlive()) return;
+        queue.offer(STOP);
+        try {
+            thread.join(5000);
+            if (compressExecutor != null) {
+                compressExecutor.shutdown();
+                compressExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<String> lineList = new ArrayList<>();
+        try {
+            while (true) {
+                String line = queue.poll(FLUSH_MS, TimeUnit.MILLISECONDS);
+                if (line != null) {
+                    lineList.add(line);
+                    queue.drainTo(lineList, MAX_BATCH);
+                }
+                boolean isStop = false;
+                for (String item : lineList) {
+                    if (item == STOP) {
+                        isStop = true;
+                        break;
+                    }
+                    write(item);
+                }
+                lineList.clear();
+
+                if (isStop) {
+                    flush();
+                    closeFile();
+                    return;
+                }
+                if (pendingBytes >= FLUSH_SIZE || (pendingBytes > 0 && System.currentTimeMillis() - lastFlushMs >= FLUSH_MS)) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            flush();
+            closeFile();
+        }
+    }
+
+    private void write(String line) {
+        try {
+            if (outputStream == null) openFile();
+            if (rollDaily && System.currentTimeMillis() >= nextRollMs) {
+                roll();
+                openFile();
+            }
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            outputStream.write(bytes);
+            pendingBytes += bytes.length;
+            fileSize += bytes.length;
+            if (fileSize > maxFileSize) {
+                // file size too large; next write starts a new file
+                roll();
+            }
+        } catch (IOException e) {
+            System.out.println("FileAppender: Exception: " + file + ", " + e.getMessage());
+            closeFile();
+        }
+    }
+
+    private void flush() {
+        if (outputStream == null) return;
+        try {
+            outputStream.flush();
+        } catch (IOException e) {
+            System.out.println("FileAppender: flush: Exception: " + file + ", " + e.getMessage());
+        }
+        pendingBytes = 0;
+        lastFlushMs = System.currentTimeMillis();
+    }
+
+    private void openFile() throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        lastFlushMs = System.currentTimeMillis();
+        long startOfDayMs = toMillis(LocalDate.now());
+        nextRollMs = toMillis(LocalDate.now().plusDays(1));
+        if (rollDaily && fileSize > 0 && file.lastModified() < startOfDayMs) {
+            // left over from a previous day
+            roll();
+            openFile();
+        }
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * close current file and rename it to a dated segment (a rename, not a copy)
+     */
+    private void roll() {
+        flush();
+        closeFile();
+        String segmentName = file.getName() + "." + LocalDateTime.now().format(SEGMENT_FORMAT);
+        File segment = new File(file.getAbsoluteFile().getParentFile(), segmentName);
+        for (int i = 1; segment.exists() || new File(segment.getPath() + ".gz").exists(); i++) {
+            segment = new File(file.getAbsoluteFile().getParentFile(), segmentName + "-" + i);
+        }
+        try {
+            Files.move(file.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("FileAppender: roll: Exception: " + file + ", " + e.getMessage());
+            return;
+        }
+        if (compress) {
+            if (compressExecutor == null) {
+                compressExecutor = Executors.newSingleThreadExecutor(ThreadUtils.newThreadFactory("log-gzip"));
+            }
+            File rolledSegment = segment;
+            pendingCompressSet.add(rolledSegment.getName());
+            compressExecutor.execute(() -> {
+                gzip(rolledSegment);
+                pendingCompressSet.remove(rolledSegment.getName());
+                deleteOldSegments();
+            });
+        } else {
+            deleteOldSegments();
+        }
+    }
+
+    private void gzip(File segment) {
+        File gzFile = new File(segment.getPath() + ".gz");
+        try (InputStream in = new FileInputStream(segment);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gzFile), BUFFER_SIZE)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.out.println("FileAppender: gzip: Exception: " + segment + ", " + e.getMessage());
+            gzFile.delete();
+            return;
+        }
+        segment.delete();
+    }
+
+    /**
+     * keep newest maxFiles segments (by the time/index in the segment name; a gzipped segment has a newer mtime than
+     * the raw segments rolled after it)
+     */
+    private void deleteOldSegments() {
+        String prefix = file.getName() + ".";
+        File[] segmentArr = file.getAbsoluteFile().getParentFile().listFiles((dir, name) -> isSegment(prefix, name));
+        if (segmentArr == null || segmentArr.length <= maxFiles) return;
+        // oldest first
+        Arrays.sort(segmentArr, Comparator.comparing((File f) -> getSegmentTime(prefix, f.getName()))
+            .thenComparingInt(f -> getSegmentIndex(prefix, f.getName())));
+        for (int i = 0; i < segmentArr.length - maxFiles; i++) {
+            if (pendingCompressSet.contains(segmentArr[i].getName())) continue;
+            segmentArr[i].delete();
+        }
+    }
+
+    /**
+     * @return true if name is "[file].[time]", "[file].[time]-[index]", with optional ".gz"
+     */
+    private static boolean isSegment(String prefix, String name) {
+        if (!name.startsWith(prefix)) return false;
+        String rest = stripGz(name.substring(prefix.length()));
+        if (rest.length() < SEGMENT_TIME_LEN) return false;
+        try {
+            LocalDateTime.parse(rest.substring(0, SEGMENT_TIME_LEN), SEGMENT_FORMAT);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        return rest.length() == SEGMENT_TIME_LEN || getSegmentIndex(prefix, name) > 0;
+    }
+
+    private static String getSegmentTime(String prefix, String name) {
+        return name.substring(prefix.length(), prefix.length() + SEGMENT_TIME_LEN);
+    }
+
+    /**
+     * @return index added when more than 1 segment is rolled in the same second; 0 if none, -1 if invalid
+     */
+    private static int getSegmentIndex(String prefix, String name) {
+        String rest = stripGz(name.substring(prefix.length()));
+        if (rest.length() == SEGMENT_TIME_LEN) return 0;
+        if (rest.charAt(SEGMENT_TIME_LEN) != '-') return -1;
+        try {
+            return Integer.parseInt(rest.substring(SEGMENT_TIME_LEN + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String stripGz(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private void closeFile() {
+        if (outputStream == null) return;
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            System.out.println("FileAppender: close: Exception: " + file + ", " + e.getMessage());
+        }
+        outputStream = null;
+        pendingBytes = 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.jpage4500.organize.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * streaming XXH64 (https://github.com/Cyan4973/xxHash) - fast non-cryptographic 64-bit hash
+ * - call update() any number of times then digest()
+ */
+public class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private long v1, v2, v3, v4;
+    private long totalLength;
+    // bytes not yet consumed (less than 1 stripe of 32 bytes)
+    private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        update(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * consume all remaining bytes of buffer
+     */
+    public void update(ByteBuffer buffer) {
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        totalLength += buf.remaining();
+
+        // fill partial stripe first
+        if (pending.position() > 0) {
+            while (pending.hasRemaining() && buf.hasRemaining()) {
+                pending.put(buf.get());
+            }
+            if (pending.hasRemaining()) {
+                buffer.position(buffer.limit());
+                return;
+            }
+            pending.flip();
+            stripe(pending);
+            pending.clear();
+        }
+        while (buf.remaining() >= 32) {
+            stripe(buf);
+        }
+        while (buf.hasRemaining()) {
+            pending.put(buf.get());
+        }
+        buffer.position(buffer.limit());
+    }
+
+    private void stripe(ByteBuffer buf) {
+        v1 = round(v1, buf.getLong());
+        v2 = round(v2, buf.getLong());
+        v3 = round(v3, buf.getLong());
+        v4 = round(v4, buf.getLong());
+    }
+
+    public long digest() {
+        long h;
+        if (totalLength >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += totalLength;
+
+        ByteBuffer buf = pending.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buf.flip();
+        while (buf.remaining() >= 8) {
+            h ^= round(0, buf.getLong());
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (buf.remaining() >= 4) {
+            h ^= (buf.getInt() & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+        }
+        while (buf.hasRemaining()) {
+            h ^= (buf.get() & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME1 + PRIME4;
+    }
+}
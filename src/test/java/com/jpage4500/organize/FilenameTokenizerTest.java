@@ -0,0 +1,244 @@
+package com.jpage4500.organize;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * FilenameTokenizer.parseName() must give the same name, type, season and tvVersion as the split/regex parser it
+ * replaced (kept below as the oracle)
+ */
+public class FilenameTokenizerTest {
+
+    // examples from OrganizeMedia.parseMedia
+    private static final String[] EXAMPLE_NAMES = new String[]{
+        "Tv.Show.Name.S03E01.720p.AMZN.WEBRip.x264-GalaxyTV.mkv",
+        "TV Show.S01E02.720p.WEB.x265-MiNX.mkv",
+        "Tv.Show.S01E07.1080p.WEB.h264-TRUFFLE.mkv",
+        "Tv.Show.S20E35.1080p.HEVC.x265-MeGusta[eztv.re].mkv",
+        "Tv.Show.S09E30.XviD-AFG[eztv.re].avi",
+        "Tv.Show.2018.S03E01.720p.NF.WEBRip.x264-GalaxyTV[TGx].mkv",
+        "Movie.Name.2022.720p.NF.WEBRip.900MB.x264-GalaxyRG.mkv",
+        "Movie Name 2022 HDTS 1080p x264 AAC - QRips.mkv",
+        "Movie.Name.2022.UltraHD.HEVC.Dual.YG.mkv",
+        "Movie - Name (2022) [Hindi HQ Audio CAM RIP].mkv",
+    };
+
+    // hand picked edge cases
+    private static final String[] EDGE_NAMES = new String[]{
+        "", ".", " ", "..", ". .", ".mkv", "mkv",
+        "Movie..Name.2022.mkv", "Movie. .Name 2022.mkv", "Movie  Name  2022  1080p.mkv",
+        ".Movie.Name.2022.mkv", " Movie Name (2022).mkv", "..Show.S01E02.mkv", "Movie.Name.", "Movie.Name. . .",
+        "Movie.Name.(2022.1080p.mkv", "Movie.Name.2022).1080p.mkv", "Movie (2022 Name.mkv", "Movie 2022) Name.mkv",
+        "Movie.()..mkv", "Movie.(.).mkv", "Movie.(2022)).mkv", "Movie.((2022).mkv",
+        "Show.2022.S01E02.mkv", "Show.(2022).s10e20.mkv", "Show.2022..S01E02.mkv", "Show.2022", "Show.2022.",
+        "Show.2022.S01E02", "Show.2022.S1E02.mkv", "Show.2022.S01E02E03.mkv",
+        "2001.A.Space.Odyssey.1968.mkv", "2001.mkv", "2022.S01E02.mkv", "S01E02.mkv", "s01e02", "Show.S00E00.mkv",
+        "Show.S99E99.1999.mkv", "Movie.1899.2100.mkv", "Movie.1900.mkv", "Movie.2099.mkv", "Movie.3000.mkv",
+        "Movie.20222.mkv", "Movie.202.mkv", "1080p.Movie.mkv", "Movie.WEB.2022.mkv", "Movie.web.mkv",
+        "Movie.WEB-DL.2022.mkv", "Show.S01E02-S01E03.mkv", "Show.S01E0x.mkv", "Show.SO1E02.mkv",
+    };
+
+    // tokens used to generate names
+    private static final String[] TOKEN_ARR = new String[]{
+        "", "Movie", "name", "THE", "a", "-", "(", ")", "()", "[eztv.re]",
+        "2022", "(2022", "2022)", "(2022)", "((2022)", "(2022))", "1999", "2001", "1899", "2100", "3000", "20222", "202",
+        "S01E02", "s10e20", "S1E02", "S01E02E03", "S01E0x", "SO1E02", "S99E99",
+        "720p", "1080p", "2160p", "WEB", "web", "WEBRip", "WEB-DL", "HEVC", "x264", "HDTS", "UltraHD", "AMZN", "mkv",
+    };
+
+    private static final String[] ORIGINAL_MARKERS = new String[]{
+        "1080p", "720p", "HDTS", "WEB", "webrip", "HEVC", "UltraHD"
+    };
+
+    // -- oracle: parser used before FilenameTokenizer --
+    private static final Pattern TV_PATTERN = Pattern.compile("[sS][0-9][0-9][eE][0-9][0-9]");
+    private static final Pattern YEAR_PATTERN = Pattern.compile("\\(?[12][90][0-9][0-9]\\)?");
+
+    @AfterEach
+    public void restoreMarkers() {
+        FilenameTokenizer.setMarkers(MarkerTrie.loadDefault());
+    }
+
+    @Test
+    public void testExampleNames() throws IOException {
+        List<String> markerList = loadDefaultMarkers();
+        for (String name : EXAMPLE_NAMES) {
+            assertSameAsOracle(name, markerList);
+        }
+    }
+
+    @Test
+    public void testEdgeCases() throws IOException {
+        List<String> markerList = loadDefaultMarkers();
+        for (String name : EDGE_NAMES) {
+            assertSameAsOracle(name, markerList);
+        }
+    }
+
+    @Test
+    public void testGeneratedNames() throws IOException {
+        List<String> markerList = loadDefaultMarkers();
+        Random random = new Random(4500);
+        for (int i = 0; i < 200000; i++) {
+            assertSameAsOracle(generateName(random), markerList);
+        }
+    }
+
+    /**
+     * same corpus with the marker list the old parser had built in
+     */
+    @Test
+    public void testOriginalMarkers() {
+        List<String> markerList = Arrays.asList(ORIGINAL_MARKERS);
+        MarkerTrie markerTrie = new MarkerTrie();
+        markerTrie.addAll(markerList);
+        FilenameTokenizer.setMarkers(markerTrie);
+
+        for (String name : EXAMPLE_NAMES) {
+            assertSameAsOracle(name, markerList);
+        }
+        for (String name : EDGE_NAMES) {
+            assertSameAsOracle(name, markerList);
+        }
+        Random random = new Random(4501);
+        for (int i = 0; i < 200000; i++) {
+            assertSameAsOracle(generateName(random), markerList);
+        }
+    }
+
+    private static void assertSameAsOracle(String name, List<String> markerList) {
+        OrganizeMedia.FileInfo expected = newFileInfo(name);
+        String expectedName = parseOracle(name, expected, markerList);
+
+        OrganizeMedia.FileInfo actual = newFileInfo(name);
+        String actualName = FilenameTokenizer.parseName(name, actual);
+
+        assertEquals(expectedName, actualName, "name: \"" + name + "\"");
+        assertEquals(expected.type, actual.type, "type: \"" + name + "\"");
+        assertEquals(expected.season, actual.season, "season: \"" + name + "\"");
+        assertEquals(expected.tvVersion, actual.tvVersion, "tvVersion: \"" + name + "\"");
+    }
+
+    private static OrganizeMedia.FileInfo newFileInfo(String name) {
+        OrganizeMedia.FileInfo fileInfo = new OrganizeMedia.FileInfo(new File(name));
+        // parseMedia sets this before parsing the name
+        fileInfo.type = OrganizeMedia.MediaType.TYPE_MOVIE;
+        return fileInfo;
+    }
+
+    /**
+     * random tokens joined by '.' or ' ' (sometimes doubled), with optional leading/trailing separators and extension
+     */
+    private static String generateName(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(8) == 0) sb.append(randomSeparator(random));
+        int numTokens = 1 + random.nextInt(7);
+        for (int i = 0; i < numTokens; i++) {
+            if (i > 0) {
+                sb.append(randomSeparator(random));
+                if (random.nextInt(10) == 0) sb.append(randomSeparator(random));
+            }
+            sb.append(TOKEN_ARR[random.nextInt(TOKEN_ARR.length)]);
+        }
+        if (random.nextInt(8) == 0) sb.append(randomSeparator(random));
+        if (random.nextBoolean()) sb.append(".mkv");
+        return sb.toString();
+    }
+
+    private static char randomSeparator(Random random) {
+        return random.nextBoolean() ? '.' : ' ';
+    }
+
+    /**
+     * display name from the split/regex parser (OrganizeMedia.parseMedia before FilenameTokenizer)
+     */
+    private static String parseOracle(String name, OrganizeMedia.FileInfo fileInfo, List<String> markerList) {
+        name = name.replace('.', ' ');
+        String[] nameArr = name.split(" ");
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < nameArr.length; i++) {
+            String part = nameArr[i];
+            if (isMarker(part, markerList)) {
+                break;
+            }
+
+            // look for season/episode
+            if (isPatternTv(part, fileInfo)) {
+                break;
+            }
+
+            // look for year
+            // ignore the first part to handle movies like "2001"
+            if (i > 0 && YEAR_PATTERN.matcher(part).matches()) {
+                if (!part.startsWith("(")) {
+                    // add year in parens "(year)"
+                    part = "(" + part + ")";
+                }
+                sb.append(' ');
+                sb.append(part);
+
+                // this could be a movie or TV show - look at the next part to try and figure out which
+                if (i + 1 < nameArr.length) {
+                    isPatternTv(nameArr[i + 1], fileInfo);
+                }
+                break;
+            }
+
+            // add part to display name
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isMarker(String part, List<String> markerList) {
+        for (String marker : markerList) {
+            if (part.equalsIgnoreCase(marker)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isPatternTv(String part, OrganizeMedia.FileInfo fileInfo) {
+        if (!TV_PATTERN.matcher(part).matches()) return false;
+        part = part.toUpperCase(Locale.US);
+        fileInfo.type = OrganizeMedia.MediaType.TYPE_TV;
+        fileInfo.tvVersion = part;
+        fileInfo.season = Integer.parseInt(part.substring(1, 3));
+        return true;
+    }
+
+    /**
+     * markers.txt (same file MarkerTrie.loadDefault() reads), as a plain list
+     */
+    private static List<String> loadDefaultMarkers() throws IOException {
+        List<String> markerList = new ArrayList<>();
+        try (InputStream is = MarkerTrie.class.getResourceAsStream("/markers.txt")) {
+            assertNotNull(is, "markers.txt not found");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                markerList.add(line);
+            }
+        }
+        return markerList;
+    }
+}